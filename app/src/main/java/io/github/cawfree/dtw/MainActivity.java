@@ -5,10 +5,14 @@ import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
-import android.os.AsyncTask;
 import android.support.v4.content.ContextCompat;
+import android.support.v4.view.ViewCompat;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.util.Log;
 import android.view.MotionEvent;
 import android.view.View;
 import android.widget.CompoundButton;
@@ -24,27 +28,22 @@ import com.github.mikephil.charting.data.Entry;
 import com.github.mikephil.charting.data.LineData;
 import com.github.mikephil.charting.data.LineDataSet;
 
-import java.util.ArrayList;
+import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-import io.github.cawfree.dtw.alg.DTW;
+import io.github.cawfree.dtw.alg.FrameBuffer;
+import io.github.cawfree.dtw.alg.FrameQueue;
+import io.github.cawfree.dtw.alg.Recognizer;
+import io.github.cawfree.dtw.alg.Spring;
+import io.github.cawfree.dtw.alg.TemplateStore;
 
 public class MainActivity extends AppCompatActivity implements SensorEventListener {
 
-    /** Converts a List of Floats into a primitive equivalent. */
-    private static final float[] primitive(final List<Float> pList) {
-        // Declare the Array.
-        final float[] lT = new float[pList.size()];
-        // Iterate the List.
-        for(int i = 0; i < pList.size(); i++) {
-            // Buffer the Element.
-            lT[i] = pList.get(i);
-        }
-        // Return the Array.
-        return lT;
-    }
-
     /** Colors an Array of DataSets. */
     private static final void color(final LineDataSet[] pLineDataSets, final int[] pColor) {
         // Iterate.
@@ -62,7 +61,11 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
         pLineDataSet.setCircleColor(pColor);
     }
 
-    /** Abstracts graph updates. */
+    /**
+     *  Abstracts graph updates. Each DataSet owns a fixed set of Entries, allocated once; samples are written into a
+     *  circular buffer of values, and the Entries are only rewritten from it when the chart is next drawn. Redraws are
+     *  coalesced onto the display's frames, so however fast samples arrive, the chart is updated at most once per frame.
+     **/
     private static class LineChartManager {
 
         /* Member Variables. */
@@ -70,26 +73,63 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
         private final LineDataSet[] mDataSets;
         private final int           mWindow;
         private final float[]       mBuffer;
+        private final int           mHistory;
+        private final float[]       mValues;
+        private final Runnable      mRedraw;
         private       int           mOffset;
+        private       int           mHead;
+        private       boolean       mScheduled;
 
         /** Constructor. */
-        public LineChartManager(final LineChart pLineChart, final int pWindow, final LineDataSet ... pDataSets) {
+        public LineChartManager(final LineChart pLineChart, final int pWindow, final int pHistory, final LineDataSet ... pDataSets) {
             // Initialize Member Variables.
             this.mLineChart = pLineChart;
             this.mDataSets  = pDataSets;
             this.mWindow    = pWindow;
             this.mBuffer    = new float[pDataSets.length];
+            this.mHistory   = pHistory;
+            this.mValues    = new float[pHistory * pDataSets.length];
+            this.mRedraw    = new Runnable() { @Override public final void run() {
+                // Draw the latest samples.
+                LineChartManager.this.onRedraw();
+            } };
             this.mOffset    = 0;
+            this.mHead      = 0;
+            this.mScheduled = false;
+            // Iterate the DataSets.
+            for(final LineDataSet lLineDataSet : pDataSets) {
+                // Ensure the DataSet is empty.
+                lLineDataSet.clear();
+                // Allocate the Entries. (These are reused for the lifetime of the chart.)
+                for(int i = 0; i < pHistory; i++) {
+                    // Buffer the Entry.
+                    lLineDataSet.addEntry(new Entry(i, 0));
+                }
+            }
+            // Draw the empty chart.
+            this.onRedraw();
+        }
+
+        /** Resets the chart to an empty history. */
+        public final void clear() {
+            // Reset the Window.
+            this.setOffset(0);
+            // Clear the partial Averages.
+            Arrays.fill(this.getBuffer(), 0.0f);
+            // Clear the History.
+            Arrays.fill(this.getValues(), 0.0f);
+            // Schedule a Redraw.
+            this.onScheduleRedraw();
         }
 
-        /** Updates the Chart. */
-        public final void onUpdateChart(final float ... pVertical) {
+        /** Updates the Chart with the frame which begins at the given offset of the array. */
+        public final void onUpdateChart(final float[] pValues, final int pOffset) {
             // Increment the Offset.
             this.setOffset(this.getOffset() + 1);
             // Buffer the Averages.
-            for(int i = 0; i < pVertical.length; i++) {
+            for(int i = 0; i < this.getBuffer().length; i++) {
                 // Accumulate.
-                this.getBuffer()[i] += pVertical[i];
+                this.getBuffer()[i] += pValues[pOffset + i];
             }
             // Have we reached the window length?
             if(this.getOffset() % this.getWindow() == 0) {
@@ -105,16 +145,52 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
             // Update the chart.
             for(int i = 0; i < this.getDataSets().length; i++) {
                 // Calculate the Average.
-                final float       lAverage      = this.getBuffer()[i] / this.getWindow();
-                // Fetch the DataSet.
-                final LineDataSet lLineDataSet  = this.getDataSets()[i];
+                final float lAverage      = this.getBuffer()[i] / this.getWindow();
                 // Write this Value to the Aggregate for subclasses.
-                                  pAggregate[i] = lAverage;
-                // Remove the oldest element.
-                lLineDataSet.removeFirst();
-                // Buffer the Average.
-                lLineDataSet.addEntry(new Entry(this.getOffset(), lAverage));
+                            pAggregate[i] = lAverage;
+                // Overwrite the oldest sample.
+                this.getValues()[(this.mHead * this.getDataSets().length) + i] = lAverage;
+            }
+            // Advance the Head.
+            this.mHead = (this.mHead + 1) % this.getHistory();
+            // Schedule a Redraw.
+            this.onScheduleRedraw();
+        }
+
+        /** Ensures the chart will be redrawn on the next frame. Any further samples before then share the same redraw. */
+        private final void onScheduleRedraw() {
+            // Is a Redraw already pending?
+            if(!this.mScheduled) {
+                // Assert that a Redraw is pending.
+                this.mScheduled = true;
+                // Redraw on the next frame. (On platforms without vsync callbacks, this falls back to the frame delay.)
+                ViewCompat.postOnAnimation(this.getLineChart(), this.getRedraw());
             }
+        }
+
+        /** Rewrites the Entries from the History, from the oldest sample to the newest, and redraws the chart. */
+        private final void onRedraw() {
+            // A Redraw is no longer pending.
+            this.mScheduled = false;
+            // Iterate the DataSets.
+            for(int i = 0; i < this.getDataSets().length; i++) {
+                // Fetch the Entries.
+                final List<Entry> lEntries = this.getDataSets()[i].getValues();
+                // Iterate the History.
+                for(int j = 0; j < this.getHistory(); j++) {
+                    // Fetch the Entry.
+                    final Entry lEntry = lEntries.get(j);
+                    // Place the Entry. (The axis follows the number of samples, so the chart scrolls.)
+                    lEntry.setX((this.getOffset() / this.getWindow()) - this.getHistory() + j + 1);
+                    lEntry.setY(this.getValues()[(((this.mHead + j) % this.getHistory()) * this.getDataSets().length) + i]);
+                }
+                // Recompute the bounds of the DataSet. (Entries were changed in place, so its cached minima and maxima are stale.)
+                this.getDataSets()[i].notifyDataSetChanged();
+            }
+            // Combine the bounds of the DataSets.
+            this.getLineChart().getData().notifyDataChanged();
+            // Recompute the axes from the new bounds.
+            this.getLineChart().notifyDataSetChanged();
             // Invalidate the Graph. (Ensure it is redrawn!)
             this.getLineChart().invalidate();
         }
@@ -136,7 +212,19 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
             return this.mBuffer;
         }
 
-        public final void setOffset(final int pOffset) {
+        private final int getHistory() {
+            return this.mHistory;
+        }
+
+        private final float[] getValues() {
+            return this.mValues;
+        }
+
+        private final Runnable getRedraw() {
+            return this.mRedraw;
+        }
+
+        private final void setOffset(final int pOffset) {
             this.mOffset = pOffset;
         }
 
@@ -165,11 +253,31 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
     private static final int    AVERAGE_WINDOW_LENGTH = 1;
     private static final int    DELAY_SENSOR          = SensorManager.SENSOR_DELAY_FASTEST;
 
+    /* Ingestion Constants. (The most accelerometer frames which may wait for the main thread before they're dropped.) */
+    private static final int    LENGTH_SENSOR_QUEUE   = 1024;
+
+    /* History Constants. (The most frames a gesture may hold; longer gestures keep their most recent frames.) */
+    private static final int    LENGTH_HISTORY_MAX    = 4096;
+
+    /* Spotting Constants. (The squared error, summed across the axes, that a spotted gesture may accumulate per training frame.) */
+    private static final float  THRESHOLD_SPOTTING    = 4.0f;
+
+    /* Storage Constants. (Trained gestures are appended to a store, and the latest is restored when the activity is created.) */
+    private static final String FILE_TEMPLATES        = "templates.bin";
+
     /* Member Variables. */
     private EMode         mMode;
     private boolean       mResponsive;
     private SensorManager mSensorManager;
 
+    /* Ingestion. (Sensor events arrive on the SensorThread, and are drained onto the main thread in batches.) */
+    private HandlerThread       mSensorThread;
+    private FrameQueue          mSensorQueue;
+    private Handler             mMainHandler;
+    private AtomicBoolean       mDrainScheduled;
+    private Runnable            mDrainRunnable;
+    private FrameQueue.Consumer mSensorConsumer;
+
     /* Feedback. */
     private RelativeLayout mFeedbackLayout;
     private ImageView      mFeedbackView;
@@ -198,9 +306,21 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
     private LineChartManager mTrainChartManager;
     private LineChartManager mRecognitionChartManager;
 
-    /* History Lists. */
-    private List<Float>[] mTrainingHistory;
-    private List<Float>[] mRecognitionHistory;
+    /* Histories. (Interleaved XYZ frames.) */
+    private FrameBuffer mTrainingHistory;
+    private FrameBuffer mRecognitionHistory;
+
+    /* Spotting. (Continuously matches the accelerometer stream against the training gesture.) */
+    private Spring mSpring;
+
+    /* Recognition. (Incrementally warps the gesture being recognized onto the training gesture, in the background.) */
+    private Recognizer        mRecognizer;
+    private Recognizer.Stream mStream;
+
+    /* Storage. (The Template Store is only touched on the StorageThread, where its Writer stays open for the lifetime of the activity.) */
+    private File                 mTemplateFile;
+    private ExecutorService      mStorageService;
+    private TemplateStore.Writer mTemplateWriter;
 
     /** Handle Creation of the Activity. */
     @Override protected final void onCreate(final Bundle pSavedInstanceState) {
@@ -227,8 +347,8 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
         this.mTrainData       = new LineData();
         this.mRecognitionData = new LineData();
         // Allocate the histories.
-        this.mTrainingHistory    = new List[]{ new ArrayList(), new ArrayList(), new ArrayList() };
-        this.mRecognitionHistory = new List[]{ new ArrayList(), new ArrayList(), new ArrayList() };
+        this.mTrainingHistory    = new FrameBuffer(3, MainActivity.LENGTH_HISTORY_MAX);
+        this.mRecognitionHistory = new FrameBuffer(3, MainActivity.LENGTH_HISTORY_MAX);
 
         // Register the Line Data Sources.
                 this.getLineAcc().setData(this.getAccData());
@@ -256,11 +376,6 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
         this.mTraining     = new LineDataSet[] { new LineDataSet(null, "X"), new LineDataSet(null, "Y"), new LineDataSet(null, "Z") };
         this.mRecognition  = new LineDataSet[] { new LineDataSet(null, "X"), new LineDataSet(null, "Y"), new LineDataSet(null, "Z") };
 
-        // Initialize chart data.
-        MainActivity.this.onInitializeData(this.getAcceleration(), MainActivity.LENGTH_CHART_HISTORY);
-        MainActivity.this.onInitializeData(this.getTraining(),     MainActivity.LENGTH_CHART_HISTORY);
-        MainActivity.this.onInitializeData(this.getRecognition(),  MainActivity.LENGTH_CHART_HISTORY);
-
         // Register the LineDataSets.
         for(final LineDataSet lLineDataSet : this.getAcceleration()) {         this.getAccData().addDataSet(lLineDataSet); }
         for(final LineDataSet lLineDataSet : this.getTraining())     {       this.getTrainData().addDataSet(lLineDataSet); }
@@ -277,27 +392,31 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
         MainActivity.color(this.getRecognition(),  new int[]{ Color.RED,  Color.GREEN,   Color.BLUE });
 
         // Declare the LineChartManager.
-        this.mAccChartManager         = new LineChartManager(this.getLineAcc(),         MainActivity.AVERAGE_WINDOW_LENGTH, this.getAcceleration());
+        this.mAccChartManager         = new LineChartManager(this.getLineAcc(),         MainActivity.AVERAGE_WINDOW_LENGTH, MainActivity.LENGTH_CHART_HISTORY, this.getAcceleration());
         // Declare the Training and Recognition update handling.
-        this.mTrainChartManager       = new LineChartManager(this.getLineTrain(),       MainActivity.AVERAGE_WINDOW_LENGTH, this.getTraining()) { @Override public final void onAggregateUpdate(final float[] pAggregate) {
+        this.mTrainChartManager       = new LineChartManager(this.getLineTrain(),       MainActivity.AVERAGE_WINDOW_LENGTH, MainActivity.LENGTH_CHART_HISTORY, this.getTraining()) { @Override public final void onAggregateUpdate(final float[] pAggregate) {
             // Update the graph. (This actually manipulates the buffer to compensate for averaging.)
             super.onAggregateUpdate(pAggregate);
-            // Iterate the Averages.
-            for(int i = 0; i < pAggregate.length; i++) {
-                // Buffer the Value.
-                MainActivity.this.getTrainingHistory()[i].add(Float.valueOf(pAggregate[i]));
-            }
+            // Buffer the Frame.
+            MainActivity.this.getTrainingHistory().append(pAggregate, 0);
         } };
         // Declare Recognition Handling.
-        this.mRecognitionChartManager = new LineChartManager(this.getLineRecognition(), MainActivity.AVERAGE_WINDOW_LENGTH, this.getRecognition()) { @Override public final void onAggregateUpdate(final float[] pAggregate) {
+        this.mRecognitionChartManager = new LineChartManager(this.getLineRecognition(), MainActivity.AVERAGE_WINDOW_LENGTH, MainActivity.LENGTH_CHART_HISTORY, this.getRecognition()) { @Override public final void onAggregateUpdate(final float[] pAggregate) {
             // Update the graph. (Compute the averages and store the result in the aggregate.)
             super.onAggregateUpdate(pAggregate);
-            // Iterate the Averages.
-            for(int i = 0; i < pAggregate.length; i++) {
-                // Buffer the Value.
-                MainActivity.this.getRecognitionHistory()[i].add(Float.valueOf(pAggregate[i]));
+            // Buffer the Frame.
+            MainActivity.this.getRecognitionHistory().append(pAggregate, 0);
+            // Are we warping onto a Training History?
+            if(MainActivity.this.getStream() != null) {
+                // Extend the alignment by the new frame. (This only queues the frame; the Sessions are extended off the main thread.)
+                MainActivity.this.getStream().append(pAggregate, 0);
             }
         } };
+        // Allocate the Recognizer. (All three axes share a single, unconstrained alignment.)
+        this.mRecognizer              = new Recognizer(3, null);
+        // Locate the Template Store, and allocate the StorageThread which owns it.
+        this.mTemplateFile            = new File(this.getFilesDir(), MainActivity.FILE_TEMPLATES);
+        this.mStorageService          = Executors.newSingleThreadExecutor();
 
         // Define the startup mode.
         this.mMode          = EMode.TRAINING;
@@ -305,10 +424,31 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
         this.mResponsive    = false;
         // Fetch the SensorManager.
         this.mSensorManager = (SensorManager)this.getSystemService(SENSOR_SERVICE);
+        // Allocate the Ingestion Pipeline.
+        this.mSensorQueue    = new FrameQueue(3, MainActivity.LENGTH_SENSOR_QUEUE);
+        this.mMainHandler    = new Handler(Looper.getMainLooper());
+        this.mDrainScheduled = new AtomicBoolean(false);
+        // Define how frames are consumed on the main thread.
+        this.mSensorConsumer = new FrameQueue.Consumer() { @Override public final void onFrame(final float[] pValues, final int pOffset) {
+            // Handle the accelerometer frame.
+            MainActivity.this.onAccelerometerFrame(pValues, pOffset);
+        } };
+        // Define how the queue is drained on the main thread.
+        this.mDrainRunnable  = new Runnable() { @Override public final void run() {
+            // Allow the SensorThread to schedule another drain. (Do this first, so that no frames are left stranded.)
+            MainActivity.this.getDrainScheduled().set(false);
+            // Drain the waiting frames as a batch.
+            MainActivity.this.getSensorQueue().drain(MainActivity.this.getSensorConsumer());
+        } };
         // Listen for clicks on the Mode switch.
         this.getModeSwitch().setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() { @Override public final void onCheckedChanged(final CompoundButton pCompoundButton, final boolean pIsChecked) {
             // Update the training state.
             MainActivity.this.setMode(pIsChecked ? EMode.RECOGNITION : EMode.TRAINING);
+            // Have we trained a gesture to spot?
+            if(MainActivity.this.getSpring() != null) {
+                // Begin spotting from a fresh stream.
+                MainActivity.this.getSpring().reset();
+            }
             // Update the title and description.
                   MainActivity.this.getModeTitle().setText(pIsChecked ? R.string.mode_recognition      : R.string.mode_training);
             MainActivity.this.getModeDescription().setText(pIsChecked ? R.string.mode_recognition_desc : R.string.mode_training_desc);
@@ -332,27 +472,25 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
                     switch(MainActivity.this.getMode()) {
                         case TRAINING     : {
                             // Reset the Training History.
-                            for(final List<Float> lTraining : MainActivity.this.getTrainingHistory()) {
-                                // Clear the Training List.
-                                lTraining.clear();
-                            }
+                            MainActivity.this.getTrainingHistory().clear();
                             // Reset the Training Chart.
-                            MainActivity.this.getTrainChartManager().setOffset(0);
-                            // Re-initialize the Training Data.
-                            MainActivity.this.onInitializeData(MainActivity.this.getTraining(), MainActivity.LENGTH_CHART_HISTORY);
+                            MainActivity.this.getTrainChartManager().clear();
                             // Assert that we're recording.
                             MainActivity.this.onFeedbackRecording();
                         } break;
                         case RECOGNITION  : {
                             // Reset the Recognition History.
-                            for(final List<Float> lRecognition : MainActivity.this.getRecognitionHistory()) {
-                                // Clear the Recognition List.
-                                lRecognition.clear();
-                            }
+                            MainActivity.this.getRecognitionHistory().clear();
                             // Reset the Recognition Chart.
-                            MainActivity.this.getRecognitionChartManager().setOffset(0);
-                            // Re-initialize the Recognition Data.
-                            MainActivity.this.onInitializeData(MainActivity.this.getRecognition(), MainActivity.LENGTH_CHART_HISTORY);
+                            MainActivity.this.getRecognitionChartManager().clear();
+                            // Abandon any recognition which is still in progress; its result is no longer wanted.
+                            MainActivity.this.getRecognizer().cancel();
+                            // Abandon any earlier Stream.
+                            if(MainActivity.this.getStream() != null) {
+                                MainActivity.this.getStream().cancel();
+                            }
+                            // Begin warping the gesture onto the Training History as it's performed.
+                            MainActivity.this.setStream((MainActivity.this.getRecognizer().size() > 0) ? MainActivity.this.getRecognizer().open() : null);
                             // Assert that we're listening.
                             MainActivity.this.onFeedbackRecognition();
                         } break;
@@ -369,37 +507,51 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
                     // Handle the Mode.
                     switch(MainActivity.this.getMode()) {
                         case TRAINING     : {
-
+                            // Did we record a gesture?
+                            if(MainActivity.this.getTrainingHistory().getFrames() > 0) {
+                                // Copy the Training History out, as interleaved frames. (The gesture outlives the recording, so it needs its own array.)
+                                final float[] lTraining = MainActivity.this.getTrainingHistory().toArray();
+                                // Use the new gesture.
+                                MainActivity.this.onTrained(lTraining);
+                                // Keep the new gesture.
+                                MainActivity.this.onSaveTemplate(lTraining);
+                            }
                         } break;
                         case RECOGNITION  : {
-                            // Ensure the ObscureLayout is visible.
-                            MainActivity.this.getObscureLayout().setVisibility(View.VISIBLE);
-                            // Launch an AsyncTask.
-                            final AsyncTask lAsyncTask = new AsyncTask() { @Override protected final Object doInBackground(final Object ... pObjects) {
-                                // Declare the Averages.
-                                final double[] lAverages = new double[3];
-                                // Declare the Dynamic Time Warping Algorithm.
-                                final DTW      lDTW      = new DTW();
-                                // Iterate the Histories.
-                                for(int i = 0; i < 3; i++) {
-                                    // Fetch the Primitive Histories for this Axis.
-                                    final float[] lTraining    = MainActivity.primitive(MainActivity.this.getTrainingHistory()[i]);
-                                    final float[] lRecognition = MainActivity.primitive(MainActivity.this.getRecognitionHistory()[i]);
-                                    // Calculate the distance using Dynamic Time Warping.
-                                                  lAverages[i] = lDTW.compute(lRecognition, lTraining).getDistance();
-                                }
-                                // Linearize execution on the UI Thread.
-                                MainActivity.this.runOnUiThread(new Runnable() { @Override public final void run() {
-                                    // Allow the layout to be interacted with again.
-                                    MainActivity.this.getObscureLayout().setVisibility(View.GONE);
-                                    // Print the Result.
-                                    Toast.makeText(MainActivity.this, "D(X:" + lAverages[0] + ", Y:" + lAverages[1] + ", Z:" + lAverages[2] + ")", Toast.LENGTH_LONG).show();
+                            // Fetch the Stream. (It's finished with this gesture.)
+                            final Recognizer.Stream   lStream   = MainActivity.this.getStream();
+                            MainActivity.this.setStream(null);
+                            // Declare how the Result is delivered.
+                            final Recognizer.Callback lCallback = new Recognizer.Callback() { @Override public final void onRecognized(final Recognizer.Request pRequest, final double[] pDistances) {
+                                // Deliver the Result on the main thread.
+                                MainActivity.this.getMainHandler().post(new Runnable() { @Override public final void run() {
+                                    // Is this still the gesture we're interested in?
+                                    if(!pRequest.isCancelled()) {
+                                        // Print the Result.
+                                        Toast.makeText(MainActivity.this, "D(XYZ:" + pDistances[0] + ")", Toast.LENGTH_LONG).show();
+                                    }
                                 } });
-                                // Satisfy the compiler.
-                                return null;
                             } };
-                            // Execute the AsyncTask.
-                            lAsyncTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, (Void)null);
+                            // Did we record a gesture, and is there a gesture to recognize it against?
+                            if(MainActivity.this.getRecognitionHistory().getFrames() > 0 && lStream != null) {
+                                // Did the Stream keep up with every frame?
+                                if(!lStream.isLossy()) {
+                                    // Only the final cells of the Sessions are left to read, so the Recognition History isn't copied.
+                                    lStream.finish(lCallback);
+                                }
+                                else {
+                                    // Score a copy of the Recognition History from scratch. (It's scored in the background, whilst the next gesture may be recorded.)
+                                    lStream.finish(MainActivity.this.getRecognitionHistory().toArray(), lCallback);
+                                }
+                            }
+                            else {
+                                // Abandon the Stream.
+                                if(lStream != null) {
+                                    lStream.cancel();
+                                }
+                                // Print the Result.
+                                Toast.makeText(MainActivity.this, "D(XYZ:" + Double.NaN + ")", Toast.LENGTH_LONG).show();
+                            }
                         } break;
                     }
                     // Re-enable the Switch.
@@ -411,24 +563,96 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
         } });
         // Hide the Feedback Layout.
         this.onHideFeedback();
+        // Restore the latest gesture we've been trained with.
+        this.onRestoreTemplate();
+    }
+
+    /** Recognizes and spots against a newly trained gesture, of interleaved XYZ frames. */
+    private final void onTrained(final float[] pTraining) {
+        // Recognize against the new gesture.
+        this.getRecognizer().clear();
+        this.getRecognizer().add(pTraining);
+        // Spot the new gesture. (Scale the threshold by the length of the gesture.)
+        this.setSpring(new Spring(pTraining, 3, MainActivity.THRESHOLD_SPOTTING * (pTraining.length / 3), new Spring.Listener() { @Override public final void onMatch(final Spring pSpring, final long pStart, final long pEnd, final double pDistance) {
+            // Print the Match.
+            Toast.makeText(MainActivity.this, "Spotted(" + pStart + ".." + pEnd + ", D:" + pDistance + ")", Toast.LENGTH_SHORT).show();
+        } }));
+    }
+
+    /** Appends a trained gesture to the Template Store, on the StorageThread. */
+    private final void onSaveTemplate(final float[] pTraining) {
+        // Save the gesture in the background. (The gesture was copied out of the FrameBuffer, so it's never written to.)
+        this.getStorageService().execute(new Runnable() { @Override public final void run() {
+            // Is the Template Store open?
+            if(!MainActivity.this.onOpenTemplateStore()) {
+                // The gesture is still in use; it just won't be remembered.
+                return;
+            }
+            try {
+                // Append the Template, and make sure it reaches the disk.
+                MainActivity.this.getTemplateWriter().append("gesture-" + System.currentTimeMillis(), pTraining);
+                MainActivity.this.getTemplateWriter().flush();
+            }
+            catch(final IOException pIOException) {
+                // The gesture is still in use; it just won't be remembered.
+                Log.w(MainActivity.TAG, "Failed to save the trained gesture.", pIOException);
+            }
+        } });
     }
 
-    /** Resets a Chart. */
-    private final void onInitializeData(final LineDataSet[] pDataSet, final int pHistoryLength) {
-        // Ensure the DataSets are empty.
-        for(final LineDataSet lLineDataSet : pDataSet) {
-            // Clear the DataSet.
-            lLineDataSet.clear();
-        }
-        // Initialize the Acceleration Charts.
-        for(int i = 0; i < pHistoryLength; i++) {
-            // Allocate a the default Entry.
-            final Entry lEntry = new Entry(i, 0);
-            // Iterate the DataSets.
-            for(final LineDataSet lLineDataSet : pDataSet) {
-                // Buffer the Entry.
-                lLineDataSet.addEntry(lEntry);
+    /** Restores the latest gesture from the Template Store on the StorageThread, and opens the store for appending. */
+    private final void onRestoreTemplate() {
+        // Restore the gesture in the background.
+        this.getStorageService().execute(new Runnable() { @Override public final void run() {
+            // Open the Template Store. (This verifies every record once, so that later appends are cheap.)
+            if(!MainActivity.this.onOpenTemplateStore()) {
+                // Start without a gesture.
+                return;
             }
+            try {
+                // Map the Template Store. (Only the record headers are read.)
+                final TemplateStore lStore = TemplateStore.map(MainActivity.this.getTemplateFile());
+                // Does the store hold a gesture?
+                if(lStore.size() > 0) {
+                    // Fetch the index of the latest gesture.
+                    final int     lLatest   = lStore.size() - 1;
+                    // Copy the gesture out of the mapping.
+                    final float[] lTraining = lStore.get(lLatest, new float[lStore.getLength(lLatest)]);
+                    // Use the gesture on the main thread.
+                    MainActivity.this.getMainHandler().post(new Runnable() { @Override public final void run() {
+                        // Has a gesture been trained in the meantime?
+                        if(MainActivity.this.getRecognizer().size() == 0) {
+                            // Use the restored gesture.
+                            MainActivity.this.onTrained(lTraining);
+                        }
+                    } });
+                }
+            }
+            catch(final IOException pIOException) {
+                // Start without a gesture.
+                Log.w(MainActivity.TAG, "Failed to restore the trained gesture.", pIOException);
+            }
+        } });
+    }
+
+    /** Opens the Template Store for appending, if it isn't already open, and returns whether it's open. (Called on the StorageThread.) */
+    private final boolean onOpenTemplateStore() {
+        // Is the Template Store already open?
+        if(this.getTemplateWriter() != null) {
+            // Reuse the Writer.
+            return true;
+        }
+        try {
+            // Open the Template Store. (Envelopes aren't stored, since recognition is unconstrained.)
+            this.mTemplateWriter = new TemplateStore.Writer(this.getTemplateFile(), 3, TemplateStore.BAND_NONE);
+            // Assert that the store is open.
+            return true;
+        }
+        catch(final IOException pIOException) {
+            // Report the failure.
+            Log.w(MainActivity.TAG, "Failed to open the template store.", pIOException);
+            // Assert that the store isn't open.
+            return false;
         }
     }
 
@@ -466,31 +690,47 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
         return (T)this.findViewById(pId);
     }
 
-    /** Handle a change to sensor data. */
+    /** Handle a change to sensor data. (Called on the SensorThread.) */
     @Override public final void onSensorChanged(final SensorEvent pSensorEvent) {
         // Are we handling accelerometer data?
         if(pSensorEvent.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
-            // Update the LineChartManager.
-            this.getAccChartManager().onUpdateChart(pSensorEvent.values);
-            // Are we Responsive?
-            if(MainActivity.this.isResponsive()) {
-                // Handle the Mode.
-                switch(MainActivity.this.getMode()) {
-                    /** Are we training? */
-                    case TRAINING    : {
-                        // Update the Training Chart.
-                        this.getTrainChartManager().onUpdateChart(pSensorEvent.values);
-                    } break;
-                    /** Are we recognizing? */
-                    case RECOGNITION : {
-                        // Update the Training Chart.
-                        this.getRecognitionChartManager().onUpdateChart(pSensorEvent.values);
-                    } break;
-                }
+            // Queue the frame for the main thread. (If the main thread has fallen behind, the frame is dropped and counted.)
+            this.getSensorQueue().offer(pSensorEvent.values, 0);
+            // Is a drain already on its way?
+            if(this.getDrainScheduled().compareAndSet(false, true)) {
+                // Drain the queue on the main thread.
+                this.getMainHandler().post(this.getDrainRunnable());
             }
         }
     }
 
+    /** Handles a single accelerometer frame, which begins at the given offset of the array. (Called on the main thread.) */
+    private final void onAccelerometerFrame(final float[] pValues, final int pOffset) {
+        // Update the LineChartManager.
+        this.getAccChartManager().onUpdateChart(pValues, pOffset);
+        // Are we Responsive?
+        if(this.isResponsive()) {
+            // Handle the Mode.
+            switch(this.getMode()) {
+                /** Are we training? */
+                case TRAINING    : {
+                    // Update the Training Chart.
+                    this.getTrainChartManager().onUpdateChart(pValues, pOffset);
+                } break;
+                /** Are we recognizing? */
+                case RECOGNITION : {
+                    // Update the Training Chart.
+                    this.getRecognitionChartManager().onUpdateChart(pValues, pOffset);
+                } break;
+            }
+        }
+        // Are we spotting a trained gesture?
+        else if(this.getMode() == EMode.RECOGNITION && this.getSpring() != null) {
+            // Stream the sample into the Spring.
+            this.getSpring().onSample(pValues, pOffset);
+        }
+    }
+
     @Override
     public void onAccuracyChanged(Sensor sensor, int i) {
         /** TODO: */
@@ -500,8 +740,35 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
     @Override protected final void onResume() {
         // Implement the Parent Definition.
         super.onResume();
-        // Register for updates on the SensorManager. (We want to listen to accelerometer data.)
-        this.getSensorManager().registerListener(this, this.getSensorManager().getDefaultSensor(Sensor.TYPE_ACCELEROMETER), MainActivity.DELAY_SENSOR);
+        // Start the SensorThread.
+        this.mSensorThread = new HandlerThread("SensorThread");
+        this.getSensorThread().start();
+        // Register for updates on the SensorManager. (We want to listen to accelerometer data, away from the main thread.)
+        this.getSensorManager().registerListener(this, this.getSensorManager().getDefaultSensor(Sensor.TYPE_ACCELEROMETER), MainActivity.DELAY_SENSOR, new Handler(this.getSensorThread().getLooper()));
+    }
+
+    /** When the Activity is destroyed. */
+    @Override protected final void onDestroy() {
+        // Implement the Parent Definition.
+        super.onDestroy();
+        // Release the Recognizer.
+        this.getRecognizer().close();
+        // Close the Template Store, once any gestures which are still being saved have been written.
+        this.getStorageService().execute(new Runnable() { @Override public final void run() {
+            // Is the Template Store open?
+            if(MainActivity.this.getTemplateWriter() != null) {
+                try {
+                    // Close the Template Store.
+                    MainActivity.this.getTemplateWriter().close();
+                }
+                catch(final IOException pIOException) {
+                    // Report the failure.
+                    Log.w(MainActivity.TAG, "Failed to close the template store.", pIOException);
+                }
+            }
+        } });
+        // Release the StorageThread once it's done.
+        this.getStorageService().shutdown();
     }
 
     /** When the Activity is paused. */
@@ -510,6 +777,13 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
         super.onPause();
         // Stop listening for accelerometer data.
         this.getSensorManager().unregisterListener(this);
+        // Stop the SensorThread.
+        this.getSensorThread().quit();
+        // Have we had to drop any frames?
+        if(this.getSensorQueue().getDropped() > 0) {
+            // Report the loss.
+            Log.w(MainActivity.TAG, "Dropped " + this.getSensorQueue().getDropped() + " of " + this.getSensorQueue().getOffered() + " accelerometer frames.");
+        }
     }
 
     /* Getters. */
@@ -533,6 +807,31 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
         return this.mSensorManager;
     }
 
+    private final HandlerThread getSensorThread() {
+        return this.mSensorThread;
+    }
+
+    /** Exposes the ingestion queue, whose counters report how many accelerometer frames have been offered, accepted and dropped. */
+    final FrameQueue getSensorQueue() {
+        return this.mSensorQueue;
+    }
+
+    private final Handler getMainHandler() {
+        return this.mMainHandler;
+    }
+
+    private final AtomicBoolean getDrainScheduled() {
+        return this.mDrainScheduled;
+    }
+
+    private final Runnable getDrainRunnable() {
+        return this.mDrainRunnable;
+    }
+
+    private final FrameQueue.Consumer getSensorConsumer() {
+        return this.mSensorConsumer;
+    }
+
     private final LineChart getLineAcc() {
         return this.mLineAcc;
     }
@@ -605,12 +904,44 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
         return this.mRecognitionChartManager;
     }
 
-    private final List<Float>[] getTrainingHistory() {
+    private final FrameBuffer getTrainingHistory() {
         return this.mTrainingHistory;
     }
 
-    private final List<Float>[] getRecognitionHistory() {
+    private final FrameBuffer getRecognitionHistory() {
         return this.mRecognitionHistory;
     }
 
+    private final void setSpring(final Spring pSpring) {
+        this.mSpring = pSpring;
+    }
+
+    private final Spring getSpring() {
+        return this.mSpring;
+    }
+
+    private final Recognizer getRecognizer() {
+        return this.mRecognizer;
+    }
+
+    private final void setStream(final Recognizer.Stream pStream) {
+        this.mStream = pStream;
+    }
+
+    private final Recognizer.Stream getStream() {
+        return this.mStream;
+    }
+
+    private final File getTemplateFile() {
+        return this.mTemplateFile;
+    }
+
+    private final ExecutorService getStorageService() {
+        return this.mStorageService;
+    }
+
+    private final TemplateStore.Writer getTemplateWriter() {
+        return this.mTemplateWriter;
+    }
+
 }
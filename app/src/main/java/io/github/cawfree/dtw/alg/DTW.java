@@ -2,102 +2,385 @@ package io.github.cawfree.dtw.alg;
 
 /**
  *  A class that implements the awesome Dynamic Time Warping algorithm.
+ *  Series may hold multiple dimensions, as interleaved frames; (x0, y0, z0, x1, y1, z1, ...). All of the dimensions share a
+ *  single warping path, and the distance between two frames is the sum of the distances between their components.
  *  Absolutely all credit for this implementation goes to the developers of the Gesture and Activity Recognition Toolkit, (GART).
  *  @http://trac.research.cc.gatech.edu/GART/browser/GART/weka/edu/gatech/gart/ml/weka/DTW.java?rev=9
  **/
 public final class DTW {
 
-    /** Defines the result for a Dynamic Time Warping operation. */
+    /**
+     *  Defines the result for a Dynamic Time Warping operation. The warping path is held packed, as a single array of
+     *  interleaved (i, j) steps; the array of steps returned by {@link #getWarpingPath()} is only built when it's asked for.
+     **/
     public static class Result {
         /* Member Variables. */
-        private final int[][] mWarpingPath;
+        private final int[]   mPath;
         private final double  mDistance;
-        /** Constructor. */
-        public Result(final int[][] pWarpingPath, final double pDistance) {
+        private       int[][] mWarpingPath;
+        /** Constructor. The path is packed as interleaved (i, j) steps, and is referenced rather than copied. */
+        public Result(final int[] pPath, final double pDistance) {
+            // Ensure the path is valid.
+            if((pPath.length & 1) != 0) {
+                // Assert that the path is invalid.
+                throw new IllegalArgumentException("A packed warping path must hold whole (i, j) steps.");
+            }
             // Initialize Member Variables.
-            this.mWarpingPath = pWarpingPath;
+            this.mPath        = pPath;
             this.mDistance    = pDistance;
+            this.mWarpingPath = null;
+        }
+        /** Constructor. Packs a warping path of (i, j) steps. */
+        public Result(final int[][] pWarpingPath, final double pDistance) {
+            // Pack the Path.
+            this(DTW.pack(pWarpingPath), pDistance);
+        }
+        /** Returns the sample index of the k-th step of the warping path. */
+        public final int getI(final int pK) {
+            return this.mPath[(pK << 1)    ];
+        }
+        /** Returns the template index of the k-th step of the warping path. */
+        public final int getJ(final int pK) {
+            return this.mPath[(pK << 1) + 1];
+        }
+        /** Returns the warping path as an array of (i, j) steps. This is built on the first call, and shared thereafter. */
+        public final int[][] getWarpingPath() {
+            // Have we built the Steps yet?
+            if(this.mWarpingPath == null) {
+                // Unpack the Path.
+                this.mWarpingPath = DTW.unpack(this.mPath);
+            }
+            // Return the Steps.
+            return this.mWarpingPath;
+        }
+        /* Getters. */
+        public final int[]          getPath() { return this.mPath;             }
+        public final int          getLength() { return this.mPath.length >> 1; }
+        public final double     getDistance() { return this.mDistance;         }
+        /** Whether the operation was abandoned, because the distance was certain to exceed the cutoff. */
+        public final boolean    isAbandoned() { return this.mDistance == DTW.ABANDONED; }
+    }
+
+    /**
+     *  Incrementally warps a growing sample onto a fixed template. Only the last row of the cost matrix is kept, alongside
+     *  the path lengths, so each appended frame costs O(M) and the distance between the sample so far and the template
+     *  can be read at any moment. It is always identical to {@link DTW#getDistance(float[], float[])} over the same frames.
+     **/
+    public final class Session {
+        /* Member Variables. */
+        private final float[]  mTemplate;
+        private final double[] mCosts;
+        private       double[] mPrevious;
+        private       double[] mCurrent;
+        private       int[]    mPreviousLength;
+        private       int[]    mCurrentLength;
+        private       int      mFrames;
+        /** Constructor. */
+        private Session(final float[] pTemplate) {
+            // Declare Iteration Constants.
+            final int lM = DTW.this.getFrames(pTemplate);
+            // Ensure the template is valid.
+            if(lM == 0) {
+                // Assert that the template is invalid.
+                throw new IllegalArgumentException("Can't warp onto an empty template.");
+            }
+            // Initialize Member Variables.
+            this.mTemplate       = pTemplate;
+            this.mCosts          = new double[lM];
+            this.mPrevious       = new double[lM];
+            this.mCurrent        = new double[lM];
+            this.mPreviousLength = new int[lM];
+            this.mCurrentLength  = new int[lM];
+            this.mFrames         = 0;
+        }
+        /** Appends the frame which begins at the given offset of the array to the sample. */
+        public final void append(final float[] pFrame, final int pOffset) {
+            // Fetch the Rows.
+            final double[] lPrevious       = this.mPrevious;
+            final double[] lCurrent        = this.mCurrent;
+            final int[]    lPreviousLength = this.mPreviousLength;
+            final int[]    lCurrentLength  = this.mCurrentLength;
+            final double[] lCosts          = this.mCosts;
+            // Calculate the Distance between the Frame and every frame of the Template.
+            DTW.this.getMetric().getCosts(pFrame, pOffset, this.mTemplate, 0, lCurrent.length - 1, DTW.this.getDimensions(), lCosts);
+            // Iterate the Template.
+            for(int j = 0; j < lCurrent.length; j++) {
+                // Fetch the Distance between the Frame and the Template for this Index.
+                final double lLocal = lCosts[j];
+                // Handle the offset.
+                if(this.mFrames == 0 && j == 0) {
+                    // Initialize the Global.
+                    lCurrent[j]       = lLocal;
+                    lCurrentLength[j] = 1;
+                }
+                else if(this.mFrames == 0) {
+                    // Accumulate along the first row.
+                    lCurrent[j]       = lLocal + lCurrent[j - 1];
+                    lCurrentLength[j] = lCurrentLength[j - 1] + 1;
+                }
+                else if(j == 0) {
+                    // Accumulate along the first column.
+                    lCurrent[j]       = lLocal + lPrevious[j];
+                    lCurrentLength[j] = lPreviousLength[j] + 1;
+                }
+                else {
+                    // Select the neighbour which backtracking would follow, in the order of the MinimaBuffer.
+                          double lMinimum = lPrevious[j];
+                          int    lLength  = lPreviousLength[j];
+                    if(lCurrent[j - 1] < lMinimum) {
+                        lMinimum = lCurrent[j - 1];
+                        lLength  = lCurrentLength[j - 1];
+                    }
+                    if(lPrevious[j - 1] < lMinimum) {
+                        lMinimum = lPrevious[j - 1];
+                        lLength  = lPreviousLength[j - 1];
+                    }
+                    // Accumulate the path.
+                    lCurrent[j]       = lMinimum + lLocal;
+                    lCurrentLength[j] = lLength + 1;
+                }
+            }
+            // Swap the Rows. (The most recent row is always the previous one.)
+            this.mPrevious       = lCurrent;
+            this.mCurrent        = lPrevious;
+            this.mPreviousLength = lCurrentLength;
+            this.mCurrentLength  = lPreviousLength;
+            // Track the Frame.
+            this.mFrames++;
+        }
+        /** Returns the distance between the frames appended so far and the template, or NaN if there aren't any. */
+        public final double getDistance() {
+            // Have any frames been appended?
+            if(this.mFrames == 0) {
+                // Assert a bad result.
+                return Double.NaN;
+            }
+            // Fetch the last cell.
+            final int lLast = this.mPrevious.length - 1;
+            // Return the Distance. (Normalize by the length of the Warping Path.)
+            return this.mPrevious[lLast] / this.mPreviousLength[lLast];
+        }
+        /** Discards the sample, so that the session can be reused against the same template. */
+        public final void reset() {
+            // Forget the Frames.
+            this.mFrames = 0;
         }
         /* Getters. */
-        public final int[][] getWarpingPath() { return this.mWarpingPath; }
-        public final double     getDistance() { return this.mDistance;    }
+        public final float[] getTemplate() { return this.mTemplate; }
+        public final int       getFrames() { return this.mFrames;   }
+    }
+
+    /** Defines the order in which {@link DTW#getDistance(float[], float[])} sweeps the cost matrix. */
+    public enum EKernel {
+        /** Sweeps row by row. Each cell depends upon the one before it, but windows and cutoffs prune the work. */
+        ROWS,
+        /**
+         *  Sweeps anti-diagonal by anti-diagonal. Every cell of an anti-diagonal depends only upon the two before it, so the
+         *  inner loop carries no dependency and can be vectorised by the compiler. This pays off for long, unconstrained
+         *  series; operations with a Window or a cutoff still sweep rows.
+         **/
+        DIAGONALS
     }
 
+    /** The distance reported for an operation which has been abandoned. */
+    public static final double ABANDONED = Double.POSITIVE_INFINITY;
+
+    /* Member Variables. */
+    private final int       mDimensions;
+    private final Metric    mMetric;
+    private final Workspace mWorkspace;
+    private       EKernel   mKernel;
+    private       boolean   mInterruptible;
+
     /** Default constructor for a class which implements dynamic time warping. */
-    public DTW() { }
+    public DTW() {
+        // Allocate a Workspace for this instance.
+        this(new Workspace());
+    }
+
+    /** Constructs a DTW which reuses the scratch buffers of the supplied Workspace. A DTW is only as thread-safe as its Workspace. */
+    public DTW(final Workspace pWorkspace) {
+        // Operate on univariate series.
+        this(1, pWorkspace);
+    }
+
+    /** Constructs a DTW which operates on series of interleaved frames, each with the given number of dimensions. */
+    public DTW(final int pDimensions) {
+        // Allocate a Workspace for this instance.
+        this(pDimensions, new Workspace());
+    }
+
+    /** Constructs a DTW which operates on interleaved frames, and reuses the scratch buffers of the supplied Workspace. */
+    public DTW(final int pDimensions, final Workspace pWorkspace) {
+        // Use the squared error.
+        this(pDimensions, Metric.SQUARED, pWorkspace);
+    }
 
+    /** Constructs a DTW which operates on interleaved frames, and measures the cost between frames using the given Metric. */
+    public DTW(final int pDimensions, final Metric pMetric) {
+        // Allocate a Workspace for this instance.
+        this(pDimensions, pMetric, new Workspace());
+    }
+
+    /** Constructs a DTW which operates on interleaved frames, measures costs using the Metric and reuses the Workspace. */
+    public DTW(final int pDimensions, final Metric pMetric, final Workspace pWorkspace) {
+        // Ensure the dimensions are valid.
+        if(pDimensions < 1) {
+            // Assert that the dimensions are invalid.
+            throw new IllegalArgumentException("A series must have at least one dimension, not " + pDimensions + ".");
+        }
+        // Initialize Member Variables.
+        this.mDimensions    = pDimensions;
+        this.mMetric        = pMetric;
+        this.mWorkspace     = pWorkspace;
+        this.mKernel        = EKernel.ROWS;
+        this.mInterruptible = false;
+    }
+
+    /** Computes the warping path and the distance between a sample and a template. */
 	public DTW.Result compute(final float[] pSample, final float[] pTemplate) {
-        // Declare Iteration Constants.
-        final int lN = pSample.length;
-        final int lM = pTemplate.length;
+        // Compute without a global constraint.
+        return this.compute(pSample, pTemplate, null);
+    }
+
+    /** Computes the warping path and the distance between a sample and a template, only visiting the cells inside the Window. */
+    public DTW.Result compute(final float[] pSample, final float[] pTemplate, final Window pWindow) {
+        // Compute without a cutoff.
+        return this.compute(pSample, pTemplate, pWindow, DTW.ABANDONED);
+    }
+
+    /** Computes the warping path and the distance, abandoning the operation once the distance is certain to exceed the cutoff. */
+    public DTW.Result compute(final float[] pSample, final float[] pTemplate, final double pCutoff) {
+        // Compute without a global constraint.
+        return this.compute(pSample, pTemplate, null, pCutoff);
+    }
+
+    /**
+     *  Computes the warping path and the distance between a sample and a template, only visiting the cells inside the Window.
+     *  Once every cell of a row has accumulated more than the cutoff multiplied by the longest possible warping path, the
+     *  distance can't fall below the cutoff, so the operation is abandoned and an empty, abandoned Result is returned.
+     **/
+    public DTW.Result compute(final float[] pSample, final float[] pTemplate, final Window pWindow, final double pCutoff) {
+        // Declare Iteration Constants. (Measured in frames.)
+        final int lN = this.getFrames(pSample);
+        final int lM = this.getFrames(pTemplate);
         // Ensure the samples are valid.
         if(lN == 0 || lM == 0) {
             // Assert a bad result.
-            return new DTW.Result(new int[][]{ /* No path data. */ }, Double.NaN);
-        }
-        // Define the Scalar Qualifier.
-              int lK = 1;
-        // Allocate the Warping Path. (Math.max(N, M) <= K < (N + M).
-        final int[][]    lWarpingPath  = new int[lN + lM][2];
-        // Declare the Local Distances.
-		final double[][] lL            = new double[lN][lM];
-        // Declare the Global Distances.
-		final double[][] lG            = new double[lN][lM];
-        // Declare the MinimaBuffer.
-        final double[]   lMinimaBuffer = new double[3];
+            return new DTW.Result(new int[]{ /* No path data. */ }, Double.NaN);
+        }
+        // Fetch the bounds of each row, and where each row begins in the Global Distances.
+        final int[]    lStart        = this.getWorkspace().getInts(Workspace.SLOT_START,  lN);
+        final int[]    lEnd          = this.getWorkspace().getInts(Workspace.SLOT_END,    lN);
+        final int[]    lOffset       = this.getWorkspace().getInts(Workspace.SLOT_OFFSET, lN);
+        // Compute the bounds of each row.
+        Window.getRanges(pWindow, lN, lM, lStart, lEnd);
+        // Pack the rows one after another.
+              int      lCells        = 0;
+        for(int i = 0; i < lN; i++) {
+            // Allocate the cells of this row.
+            lOffset[i] = lCells - lStart[i];
+            lCells    += (lEnd[i] - lStart[i]) + 1;
+        }
+        // Fetch the Global Distances. (Only cells inside the window are stored; cell (i, j) lives at Offset[i] + j.)
+        final double[] lG            = this.getWorkspace().getDoubles(Workspace.SLOT_GLOBAL, lCells);
+        // Fetch the length of the path which backtracking would take to each cell, so that the path can be sized up front.
+        final int[]    lL            = this.getWorkspace().getInts(Workspace.SLOT_LENGTH, lCells);
+        // Fetch the MinimaBuffer.
+        final double[] lMinimaBuffer = this.getWorkspace().getDoubles(Workspace.SLOT_MINIMA, 3);
+        // Fetch the Local Distances of a row.
+        final double[] lCosts        = this.getWorkspace().getDoubles(Workspace.SLOT_COSTS, lM);
+        // Fetch the Metric.
+        final Metric   lMetric       = this.getMetric();
+        // Fetch the Dimensions.
+        final int      lDimensions   = this.getDimensions();
+        // Compute the global distance beyond which the cutoff can't be met. (K < (N + M).)
+        final double   lAbandon      = pCutoff * ((lN + lM) - 1);
         // Declare iteration variables.
         int i, j;
+
         // Iterate the Sample.
-		for(i = 0; i < lN; i++) {
-            // Fetch the Sample.
-            final float lSample = pSample[i];
+        for(i = 0; i < lN; i++) {
+            // Fetch the bounds of this row and the previous one. (The first row has no predecessor.)
+            final int   lRowStart       = lStart[i];
+            final int   lRowEnd         = lEnd[i];
+            final int   lRow            = lOffset[i];
+            final int   lPreviousStart  = (i == 0) ? 0  : lStart[i - 1];
+            final int   lPreviousEnd    = (i == 0) ? -1 : lEnd[i - 1];
+            final int   lPrevious       = (i == 0) ? 0  : lOffset[i - 1];
+            // Track the smallest global distance along this row.
+                  double lMinimum       = Double.POSITIVE_INFINITY;
+            // Calculate the Distances between the Sample and the Template along this row.
+            lMetric.getCosts(pSample, i * lDimensions, pTemplate, lRowStart, lRowEnd, lDimensions, lCosts);
             // Iterate the Template.
-			for(j = 0; j < lM; j++) {
-                // Calculate the Distance between the Sample and the Template for this Index.
-				lL[i][j] = this.getDistanceBetween(lSample, pTemplate[j]);
-			}
-		}
-
-		// Initialize the Global.
-		lG[0][0] = lL[0][0];
-		
-		for(i = 1; i < lN; i++) {
-			lG[i][0] = lL[i][0] + lG[i - 1][0];
-		}
-
-		for(j = 1; j < lM; j++) {
-			lG[0][j] = lL[0][j] + lG[0][j - 1];
-		}
+            for(j = lRowStart; j <= lRowEnd; j++) {
+                // Fetch the Distance between the Sample and the Template for this Index.
+                final double lLocal = lCosts[j];
+                // Are we at the origin?
+                if(j == 0 && i == 0) {
+                    // Initialize the Global.
+                    lG[lRow] = lLocal;
+                    lL[lRow] = 1;
+                }
+                else {
+                    // Fetch the neighbours. (Neighbours which lie outside of the window are unreachable.)
+                    final double lUp       = (j <= lPreviousEnd)                             ? lG[lPrevious + j]     : Double.POSITIVE_INFINITY;
+                    final double lLeft     = (j >  lRowStart)                                ? lG[lRow + j - 1]      : Double.POSITIVE_INFINITY;
+                    final double lDiagonal = (j >  lPreviousStart && j - 1 <= lPreviousEnd) ? lG[lPrevious + j - 1] : Double.POSITIVE_INFINITY;
+                    // Select the neighbour which backtracking would follow, in the order of the MinimaBuffer.
+                          double lNearest  = lUp;
+                          int    lLength   = (j <= lPreviousEnd) ? lL[lPrevious + j] : 0;
+                    if(lLeft < lNearest) {
+                        lNearest = lLeft;
+                        lLength  = lL[lRow + j - 1];
+                    }
+                    if(lDiagonal < lNearest) {
+                        lNearest = lDiagonal;
+                        lLength  = lL[lPrevious + j - 1];
+                    }
+                    // Accumulate the path.
+                    lG[lRow + j] = lNearest + lLocal;
+                    lL[lRow + j] = lLength + 1;
+                }
+                // Track the Minimum.
+                lMinimum = Math.min(lMinimum, lG[lRow + j]);
+            }
+            // Can the warping path still meet the cutoff?
+            if(lMinimum > lAbandon) {
+                // Abandon the operation.
+                return new DTW.Result(new int[]{ /* No path data. */ }, DTW.ABANDONED);
+            }
+        }
 
-		for (i = 1; i < lN; i++) {
-			for (j = 1; j < lM; j++) {
-                // Accumulate the path.
-				lG[i][j] = (Math.min(Math.min(lG[i-1][j], lG[i-1][j-1]), lG[i][j-1])) + lL[i][j];
-			}
-		}
+        // Fetch the length of the Warping Path. (Math.max(N, M) <= K < (N + M).)
+        final int      lK            = lL[lOffset[lN - 1] + lM - 1];
+        // Allocate the Warping Path, as interleaved (i, j) pairs. (Backtracking fills it from the end, so it's never reversed.)
+        final int[]    lWarpingPath  = new int[lK << 1];
+        // Declare the index of the step being written.
+              int      lStep         = lK - 1;
 
-		// Update iteration varaibles.
-		i = lWarpingPath[lK - 1][0] = (lN - 1);
-		j = lWarpingPath[lK - 1][1] = (lM - 1);
+        // Update iteration varaibles.
+        i = lWarpingPath[(lStep << 1)    ] = (lN - 1);
+        j = lWarpingPath[(lStep << 1) + 1] = (lM - 1);
 
         // Whilst there are samples to process...
-		while ((i + j) != 0) {
+        while((i + j) != 0) {
             // Handle the offset.
-			if(i == 0) {
+            if(i == 0) {
                 // Decrement the iteration variable.
-				j -= 1;
-			}
-			else if(j == 0) {
+                j -= 1;
+            }
+            else if(j == 0) {
                 // Decrement the iteration variable.
-				i -= 1;
-			}
-			else {
+                i -= 1;
+            }
+            else {
                 // Update the contents of the MinimaBuffer.
-                lMinimaBuffer[0] = lG[i - 1][j];
-                lMinimaBuffer[1] = lG[i][j - 1];
-                lMinimaBuffer[2] = lG[i - 1][j - 1];
+                lMinimaBuffer[0] = DTW.getGlobal(lG, lStart, lEnd, lOffset, i - 1, j);
+                lMinimaBuffer[1] = DTW.getGlobal(lG, lStart, lEnd, lOffset, i,     j - 1);
+                lMinimaBuffer[2] = DTW.getGlobal(lG, lStart, lEnd, lOffset, i - 1, j - 1);
                 // Calculate the Index of the Minimum.
-				final int lMinimumIndex = this.getMinimumIndex(lMinimaBuffer);
+                final int lMinimumIndex = this.getMinimumIndex(lMinimaBuffer);
                 // Declare booleans.
                 final boolean lMinIs0 = (lMinimumIndex == 0);
                 final boolean lMinIs1 = (lMinimumIndex == 1);
@@ -105,39 +388,317 @@ public final class DTW {
                 // Update the iteration components.
                 i -= (lMinIs0 || lMinIs2) ? 1 : 0;
                 j -= (lMinIs1 || lMinIs2) ? 1 : 0;
-			}
-			// Increment the qualifier.
-			lK++;
+            }
+            // Move onto the preceding step.
+            lStep--;
             // Update the Warping Path.
-			lWarpingPath[lK - 1][0] = i;
-			lWarpingPath[lK - 1][1] = j;
-		}
+            lWarpingPath[(lStep << 1)    ] = i;
+            lWarpingPath[(lStep << 1) + 1] = j;
+        }
 
-        // Return the Result. (Calculate the Warping Path and the Distance.)
-        return new DTW.Result(this.reverse(lWarpingPath, lK), ((lG[lN - 1][lM - 1]) / lK));
-	}
-	
-	/** Changes the order of the warping path, in increasing order. */
-	private int[][] reverse(final int[][] pPath, final int pK) {
+        // Return the Result. (Normalize the Distance by the length of the Warping Path.)
+        return new DTW.Result(lWarpingPath, ((lG[lOffset[lN - 1] + lM - 1]) / lK));
+    }
+
+    /** Fetches a Global Distance from packed rows; cells outside of the window are unreachable. */
+    private static double getGlobal(final double[] pG, final int[] pStart, final int[] pEnd, final int[] pOffset, final int pI, final int pJ) {
+        // Is the cell inside of the window?
+        return (pJ >= pStart[pI] && pJ <= pEnd[pI]) ? pG[pOffset[pI] + pJ] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     *  Computes the same distance as {@link #compute(float[], float[])}, without building the cost matrices or the warping path.
+     *  Only two rolling rows spanning the shorter series are kept, alongside the length of the path which backtracking would
+     *  take to each cell, so memory is O(min(N, M)).
+     **/
+    public double getDistance(final float[] pSample, final float[] pTemplate) {
+        // Compute without a global constraint.
+        return this.getDistance(pSample, pTemplate, null);
+    }
+
+    /** Computes the same distance as {@link #compute(float[], float[], Window)}, using rolling rows. */
+    public double getDistance(final float[] pSample, final float[] pTemplate, final Window pWindow) {
+        // Compute without a cutoff.
+        return this.getDistance(pSample, pTemplate, pWindow, DTW.ABANDONED);
+    }
+
+    /** Computes the distance using rolling rows, returning {@link #ABANDONED} once the distance is certain to exceed the cutoff. */
+    public double getDistance(final float[] pSample, final float[] pTemplate, final double pCutoff) {
+        // Compute without a global constraint.
+        return this.getDistance(pSample, pTemplate, null, pCutoff);
+    }
+
+    /**
+     *  Computes the distance using rolling rows, only visiting the cells inside the Window. Every warping path passes through
+     *  each row, and can take at most (N - 1 - i) + (M - 1 - j) more steps from cell (i, j); so once every cell of a row has
+     *  accumulated more than the cutoff multiplied by the longest path it could still complete, the operation is abandoned
+     *  and {@link #ABANDONED} is returned.
+     *
+     *  When the DTW is interruptible, (see {@link #setInterruptible(boolean)}), the operation is also abandoned if the calling
+     *  thread is interrupted, so that work which is no longer wanted can be cancelled cooperatively. The interrupt is checked
+     *  once per row, and is left set for the caller to observe. By default, interrupts are ignored.
+     **/
+    public double getDistance(final float[] pSample, final float[] pTemplate, final Window pWindow, final double pCutoff) {
+        // Declare Iteration Constants. (Measured in frames.)
+        final int lN = this.getFrames(pSample);
+        final int lM = this.getFrames(pTemplate);
+        // Ensure the samples are valid.
+        if(lN == 0 || lM == 0) {
+            // Assert a bad result.
+            return Double.NaN;
+        }
+        // Can we sweep the anti-diagonals instead?
+        if(this.getKernel() == EKernel.DIAGONALS && pWindow == null && pCutoff == DTW.ABANDONED) {
+            // Compute the Distance along the anti-diagonals.
+            return this.getDiagonalDistance(pSample, pTemplate, lN, lM);
+        }
+        // Iterate along the longer series, so that the rows span the shorter one.
+        final boolean  lTransposed     = (lM > lN);
+        final int      lHeight         = lTransposed ? lM : lN;
+        final int      lWidth          = lTransposed ? lN : lM;
+        // Are the rows bounded by a Window?
+        final boolean  lBounded        = (pWindow != null);
+        // Fetch the bounds of each row of the Sample, and of each column of the Template.
+        final int[]    lStart          = lBounded ? this.getWorkspace().getInts(Workspace.SLOT_START,        lN) : null;
+        final int[]    lEnd            = lBounded ? this.getWorkspace().getInts(Workspace.SLOT_END,          lN) : null;
+        final int[]    lColumnStart    = (lBounded && lTransposed) ? this.getWorkspace().getInts(Workspace.SLOT_COLUMN_START, lM) : null;
+        final int[]    lColumnEnd      = (lBounded && lTransposed) ? this.getWorkspace().getInts(Workspace.SLOT_COLUMN_END,   lM) : null;
+        // Are we using a Window?
+        if(lBounded) {
+            // Compute the Bounds of the Sample.
+            Window.getRanges(pWindow, lN, lM, lStart, lEnd);
+            // Are we iterating along the Template?
+            if(lTransposed) {
+                // Transpose the Bounds onto the Template.
+                Window.transpose(lN, lM, lStart, lEnd, lColumnStart, lColumnEnd);
+            }
+        }
+        // Fetch the bounds of each row along the Outer Series.
+        final int[]    lOuterStart     = lTransposed ? lColumnStart : lStart;
+        final int[]    lOuterEnd       = lTransposed ? lColumnEnd   : lEnd;
+        // Fetch the Rolling Global Distances.
+              double[] lPrevious       = this.getWorkspace().getDoubles(Workspace.SLOT_PREVIOUS, lWidth);
+              double[] lCurrent        = this.getWorkspace().getDoubles(Workspace.SLOT_CURRENT,  lWidth);
+        // Fetch the Rolling Path Lengths.
+              int[]    lPreviousLength = this.getWorkspace().getInts(Workspace.SLOT_PREVIOUS_LENGTH, lWidth);
+              int[]    lCurrentLength  = this.getWorkspace().getInts(Workspace.SLOT_CURRENT_LENGTH,  lWidth);
+        // Fetch the Local Distances of a row.
+        final double[] lCosts          = this.getWorkspace().getDoubles(Workspace.SLOT_COSTS, lWidth);
+        // Fetch the Outer and Inner Series. (Metrics are symmetric, so the argument order doesn't matter.)
+        final float[]  lOuter          = lTransposed ? pTemplate : pSample;
+        final float[]  lInner          = lTransposed ? pSample   : pTemplate;
+        // Fetch the Metric.
+        final Metric   lMetric         = this.getMetric();
+        // Fetch the Dimensions.
+        final int      lDimensions     = this.getDimensions();
+        // Declare the bounds of the previous row. (The first row has no predecessor.)
+              int      lPreviousStart  = 0;
+              int      lPreviousEnd    = -1;
+        // Iterate the Outer Series.
+        for(int i = 0; i < lHeight; i++) {
+            // Fetch the bounds of this row.
+            final int   lRowStart  = lBounded ? lOuterStart[i] : 0;
+            final int   lRowEnd    = lBounded ? lOuterEnd[i]   : lWidth - 1;
+            // Compute the number of steps remaining from the start of this row to the last cell.
+            final int   lRemaining = (lHeight - 1 - i) + (lWidth - 1);
+            // Assume that the row can be abandoned, until a cell proves otherwise.
+                  boolean lAbandon = true;
+            // Calculate the Local Distances along this row.
+            lMetric.getCosts(lOuter, i * lDimensions, lInner, lRowStart, lRowEnd, lDimensions, lCosts);
+            // Iterate the Inner Series.
+            for(int j = lRowStart; j <= lRowEnd; j++) {
+                // Fetch the Local Distance.
+                final double lLocal = lCosts[j];
+                // Are we at the origin?
+                if(i == 0 && j == 0) {
+                    // Initialize the Global.
+                    lCurrent[j]       = lLocal;
+                    lCurrentLength[j] = 1;
+                }
+                else {
+                    // Fetch the neighbours. (Neighbours which lie outside of the window are unreachable.)
+                    final double lUp           = (j <= lPreviousEnd)                             ? lPrevious[j]     : Double.POSITIVE_INFINITY;
+                    final double lLeft         = (j >  lRowStart)                                ? lCurrent[j - 1]  : Double.POSITIVE_INFINITY;
+                    final double lDiagonal     = (j >  lPreviousStart && j - 1 <= lPreviousEnd) ? lPrevious[j - 1] : Double.POSITIVE_INFINITY;
+                    final int    lUpLength     = (j <= lPreviousEnd)                             ? lPreviousLength[j]    : 0;
+                    final int    lLeftLength   = (j >  lRowStart)                                ? lCurrentLength[j - 1] : 0;
+                    // Order the neighbours the same way as the MinimaBuffer, in terms of the Sample and the Template.
+                    final double lFirst        = lTransposed ? lLeft       : lUp;
+                    final double lSecond       = lTransposed ? lUp         : lLeft;
+                    final int    lFirstLength  = lTransposed ? lLeftLength : lUpLength;
+                    final int    lSecondLength = lTransposed ? lUpLength   : lLeftLength;
+                    // Select the neighbour which backtracking would follow. (Earlier neighbours win ties.)
+                          double lMinimum      = lFirst;
+                          int    lLength       = lFirstLength;
+                    if(lSecond < lMinimum) {
+                        lMinimum = lSecond;
+                        lLength  = lSecondLength;
+                    }
+                    if(lDiagonal < lMinimum) {
+                        lMinimum = lDiagonal;
+                        lLength  = lPreviousLength[j - 1];
+                    }
+                    // Accumulate the path.
+                    lCurrent[j]       = lMinimum + lLocal;
+                    lCurrentLength[j] = lLength + 1;
+                }
+                // Could a warping path through this cell still meet the cutoff?
+                if(lCurrent[j] <= pCutoff * ((lCurrentLength[j] + lRemaining) - j)) {
+                    // The row can't be abandoned.
+                    lAbandon = false;
+                }
+            }
+            // Is the cutoff out of reach, or has the operation been cancelled?
+            if(lAbandon || this.isInterrupted()) {
+                // Abandon the operation.
+                return DTW.ABANDONED;
+            }
+            // Swap the Rows.
+            final double[] lRow       = lPrevious;
+                           lPrevious  = lCurrent;
+                           lCurrent   = lRow;
+            final int[]    lLengths   = lPreviousLength;
+                     lPreviousLength  = lCurrentLength;
+                     lCurrentLength   = lLengths;
+            // Track the bounds of the row we've just completed.
+            lPreviousStart = lRowStart;
+            lPreviousEnd   = lRowEnd;
+        }
+        // Return the Distance. (Normalize by the length of the Warping Path.)
+        return lPrevious[lWidth - 1] / lPreviousLength[lWidth - 1];
+    }
+
+    /**
+     *  Computes the unconstrained distance by sweeping anti-diagonals, where cell (i, j) lies on diagonal (i + j). Three
+     *  rolling diagonals are kept, each indexed by i; the neighbours above and to the left of a cell lie on the previous
+     *  diagonal, and the diagonal neighbour lies on the one before that. The cells which touch the edges of the matrix are
+     *  handled separately, so that the interior loop is branch-free apart from the selection of the neighbour. Like the rows,
+     *  an interruptible sweep is abandoned once per anti-diagonal if the calling thread has been interrupted.
+     **/
+    private double getDiagonalDistance(final float[] pSample, final float[] pTemplate, final int pN, final int pM) {
+        // Fetch the Rolling Global Distances.
+              double[] lBefore        = this.getWorkspace().getDoubles(Workspace.SLOT_DIAGONAL, pN);
+              double[] lPrevious      = this.getWorkspace().getDoubles(Workspace.SLOT_PREVIOUS, pN);
+              double[] lCurrent       = this.getWorkspace().getDoubles(Workspace.SLOT_CURRENT,  pN);
+        // Fetch the Rolling Path Lengths.
+              int[]    lBeforeLength   = this.getWorkspace().getInts(Workspace.SLOT_DIAGONAL_LENGTH, pN);
+              int[]    lPreviousLength = this.getWorkspace().getInts(Workspace.SLOT_PREVIOUS_LENGTH, pN);
+              int[]    lCurrentLength  = this.getWorkspace().getInts(Workspace.SLOT_CURRENT_LENGTH,  pN);
+        // Fetch the Local Distances of an anti-diagonal.
+        final double[] lCosts         = this.getWorkspace().getDoubles(Workspace.SLOT_COSTS, pN);
+        // Fetch the Metric.
+        final Metric   lMetric        = this.getMetric();
+        // Iterate the Anti-Diagonals.
+        for(int d = 0; d < (pN + pM) - 1; d++) {
+            // Fetch the rows which this anti-diagonal crosses.
+            final int lFirst = Math.max(0, d - (pM - 1));
+            final int lLast  = Math.min(pN - 1, d);
+            // Calculate the Local Distances along this anti-diagonal.
+            lMetric.getDiagonalCosts(pSample, pTemplate, d, lFirst, lLast, this.getDimensions(), lCosts);
+            // Are we at the origin?
+            if(d == 0) {
+                // Initialize the Global.
+                lCurrent[0]       = lCosts[0];
+                lCurrentLength[0] = 1;
+            }
+            else {
+                // Does this anti-diagonal touch the first row? (The cell can only be reached from the left.)
+                if(lFirst == 0) {
+                    lCurrent[0]       = lPrevious[0] + lCosts[0];
+                    lCurrentLength[0] = lPreviousLength[0] + 1;
+                }
+                // Does this anti-diagonal touch the first column? (The cell can only be reached from above.)
+                if(lLast == d) {
+                    lCurrent[d]       = lPrevious[d - 1] + lCosts[d];
+                    lCurrentLength[d] = lPreviousLength[d - 1] + 1;
+                }
+                // Iterate the interior of the anti-diagonal. (No cell depends upon another cell of the same diagonal.)
+                for(int i = Math.max(1, lFirst); i <= Math.min(lLast, d - 1); i++) {
+                    // Select the neighbour which backtracking would follow, in the order of the MinimaBuffer.
+                          double lMinimum = lPrevious[i - 1];
+                          int    lLength  = lPreviousLength[i - 1];
+                    if(lPrevious[i] < lMinimum) {
+                        lMinimum = lPrevious[i];
+                        lLength  = lPreviousLength[i];
+                    }
+                    if(lBefore[i - 1] < lMinimum) {
+                        lMinimum = lBefore[i - 1];
+                        lLength  = lBeforeLength[i - 1];
+                    }
+                    // Accumulate the path.
+                    lCurrent[i]       = lMinimum + lCosts[i];
+                    lCurrentLength[i] = lLength + 1;
+                }
+            }
+            // Has the operation been cancelled?
+            if(this.isInterrupted()) {
+                // Abandon the operation.
+                return DTW.ABANDONED;
+            }
+            // Rotate the Diagonals.
+            final double[] lDiagonal = lBefore;
+                           lBefore   = lPrevious;
+                           lPrevious = lCurrent;
+                           lCurrent  = lDiagonal;
+            final int[]    lLengths        = lBeforeLength;
+                           lBeforeLength   = lPreviousLength;
+                           lPreviousLength = lCurrentLength;
+                           lCurrentLength  = lLengths;
+        }
+        // Return the Distance. (Normalize by the length of the Warping Path.)
+        return lPrevious[pN - 1] / lPreviousLength[pN - 1];
+    }
+
+    /** Packs a warping path of (i, j) steps into interleaved pairs. */
+    private static int[] pack(final int[][] pWarpingPath) {
         // Allocate the Path.
-		final int[][] lPath = new int[pK][2];
-        // Iterate.
-		for(int i = 0; i < pK; i++) {
-            // Iterate.
-			for (int j = 0; j < 2; j++) {
-                // Update the Path.
-				lPath[i][j] = pPath[pK - i - 1][j];
-			}
-		}
-		// Return the Allocated Path.
-		return lPath;
-	}
-	
-	/** Computes a distance between two points. */
-	protected double getDistanceBetween(double p1, double p2) {
-        // Calculate the square error.
-		return (p1 - p2) * (p1 - p2);
-	}
+        final int[] lPath = new int[pWarpingPath.length << 1];
+        // Iterate the Steps.
+        for(int i = 0; i < pWarpingPath.length; i++) {
+            // Update the Path.
+            lPath[(i << 1)    ] = pWarpingPath[i][0];
+            lPath[(i << 1) + 1] = pWarpingPath[i][1];
+        }
+        // Return the Packed Path.
+        return lPath;
+    }
+
+    /** Unpacks an interleaved warping path into an array of (i, j) steps. */
+    private static int[][] unpack(final int[] pPath) {
+        // Allocate the Steps.
+        final int[][] lWarpingPath = new int[pPath.length >> 1][2];
+        // Iterate the Steps.
+        for(int i = 0; i < lWarpingPath.length; i++) {
+            // Update the Step.
+            lWarpingPath[i][0] = pPath[(i << 1)    ];
+            lWarpingPath[i][1] = pPath[(i << 1) + 1];
+        }
+        // Return the Steps.
+        return lWarpingPath;
+    }
+
+    /** Opens a Session which incrementally warps a growing sample onto the template. Sessions allocate their own rows. */
+    public DTW.Session getSession(final float[] pTemplate) {
+        // Allocate the Session.
+        return new DTW.Session(pTemplate);
+    }
+
+    /** Determines whether an interruptible operation has been cancelled, by an interrupt of the calling thread. */
+    private boolean isInterrupted() {
+        // Only observe the interrupt if we've been asked to.
+        return this.isInterruptible() && Thread.currentThread().isInterrupted();
+    }
+
+    /** Computes the number of frames in a series. */
+    private int getFrames(final float[] pSeries) {
+        // Ensure the series is made of whole frames.
+        if(pSeries.length % this.getDimensions() != 0) {
+            // Assert that the series is invalid.
+            throw new IllegalArgumentException("A series of " + pSeries.length + " values can't be divided into frames of " + this.getDimensions() + " dimensions.");
+        }
+        // Return the number of frames.
+        return pSeries.length / this.getDimensions();
+    }
 
 	/** Finds the index of the minimum element from the given array. */
 	protected final int getMinimumIndex(final double[] pArray) {
@@ -156,4 +717,38 @@ public final class DTW {
 		return lIndex;
 	}
 
+    /* Getters. */
+    public final int getDimensions() {
+        return this.mDimensions;
+    }
+
+    public final void setKernel(final EKernel pKernel) {
+        this.mKernel = pKernel;
+    }
+
+    public final EKernel getKernel() {
+        return this.mKernel;
+    }
+
+    /**
+     *  Determines whether {@link #getDistance(float[], float[], Window, double)} abandons the operation when the calling
+     *  thread is interrupted, returning {@link #ABANDONED}. This is off by default, so that callers which don't expect
+     *  cancellation never mistake an interrupt for a distance.
+     **/
+    public final void setInterruptible(final boolean pIsInterruptible) {
+        this.mInterruptible = pIsInterruptible;
+    }
+
+    public final boolean isInterruptible() {
+        return this.mInterruptible;
+    }
+
+    public final Metric getMetric() {
+        return this.mMetric;
+    }
+
+    public final Workspace getWorkspace() {
+        return this.mWorkspace;
+    }
+
 }
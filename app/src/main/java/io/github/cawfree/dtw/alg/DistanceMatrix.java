@@ -0,0 +1,218 @@
+package io.github.cawfree.dtw.alg;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *  Computes the distances between every pair of a collection of series, for clustering and curating templates.
+ *
+ *  Only the upper triangle is computed; pair (i, j), where i < j, treats series i as the sample. The results are written
+ *  in condensed form, row after row, so that the distance for (i, j) lives at {@link #getIndex(int, int, int)}. Rows of
+ *  the triangle are claimed by a fixed pool of workers, longest first, and each worker reuses its own Workspace, so the
+ *  only allocation is the output itself.
+ *
+ *  Matrices are serialized; each one is parallelised internally. Call {@link #close()} to release the workers.
+ **/
+public final class DistanceMatrix {
+
+    /** Scores the rows of the triangle claimed by a single worker. */
+    private final class Worker implements Callable<Void> {
+        /* Member Variables. */
+        private final DTW mDTW;
+        /** Constructor. */
+        private Worker() {
+            // Allocate a DTW which shares the configuration, but owns its Workspace.
+            this.mDTW = new DTW(DistanceMatrix.this.getDTW().getDimensions(), DistanceMatrix.this.getDTW().getMetric(), new Workspace());
+        }
+        /** Claims rows until there are none left to score. */
+        @Override public final Void call() {
+            // Fetch the Query.
+            final List<float[]> lSeries = DistanceMatrix.this.mSeries;
+            final DoubleBuffer  lOutput = DistanceMatrix.this.mOutput;
+            final int           lN      = lSeries.size();
+            // Follow the configured kernel.
+            this.mDTW.setKernel(DistanceMatrix.this.getDTW().getKernel());
+            // Declare the index of the claimed Row.
+            int i;
+            // Whilst there are rows to claim...
+            while((i = DistanceMatrix.this.getCursor().getAndIncrement()) < lN - 1) {
+                // Fetch the Sample.
+                final float[] lSample = lSeries.get(i);
+                // Fetch where this row begins in the Output.
+                final int     lIndex  = DistanceMatrix.getIndex(i, i + 1, lN);
+                // Iterate the rest of the row.
+                for(int j = i + 1; j < lN; j++) {
+                    // Compute the Distance.
+                    lOutput.put(lIndex + (j - i - 1), this.mDTW.getDistance(lSample, lSeries.get(j), DistanceMatrix.this.getWindow()));
+                }
+            }
+            // Satisfy the compiler.
+            return null;
+        }
+    }
+
+    /** Computes where the distance between series i and j, (i < j), lives in the condensed triangle of n series. */
+    public static int getIndex(final int pI, final int pJ, final int pN) {
+        // Skip the rows before i, then the cells of row i before j.
+        return (int)((((long)pI * ((2L * pN) - pI - 1)) / 2) + (pJ - pI - 1));
+    }
+
+    /** Computes the number of pairs in the condensed triangle of n series. */
+    public static long getLength(final int pN) {
+        // Count the Pairs.
+        return ((long)pN * (pN - 1)) / 2;
+    }
+
+    /* Member Variables. */
+    private final DTW             mDTW;
+    private final Window          mWindow;
+    private final ExecutorService mExecutorService;
+    private final List<Worker>    mWorkers;
+    private final AtomicInteger   mCursor;
+
+    /* Matrix State. (Published to the Workers by submission to the ExecutorService.) */
+    private List<float[]> mSeries;
+    private DoubleBuffer  mOutput;
+
+    /** Constructor. Uses one worker per available core. */
+    public DistanceMatrix(final DTW pDTW, final Window pWindow) {
+        // Use every core.
+        this(pDTW, pWindow, Runtime.getRuntime().availableProcessors());
+    }
+
+    /** Constructor. The DTW defines the dimensions, the Metric and the kernel; a null Window is unconstrained. */
+    public DistanceMatrix(final DTW pDTW, final Window pWindow, final int pParallelism) {
+        // Ensure the parallelism is valid.
+        if(pParallelism < 1) {
+            // Assert that the parallelism is invalid.
+            throw new IllegalArgumentException("A DistanceMatrix needs at least one worker, not " + pParallelism + ".");
+        }
+        // Initialize Member Variables.
+        this.mDTW             = pDTW;
+        this.mWindow          = pWindow;
+        this.mExecutorService = Executors.newFixedThreadPool(pParallelism);
+        this.mWorkers         = new ArrayList<>(pParallelism);
+        this.mCursor          = new AtomicInteger();
+        // Allocate the Workers.
+        for(int i = 0; i < pParallelism; i++) {
+            // Buffer a Worker.
+            this.mWorkers.add(new Worker());
+        }
+    }
+
+    /** Computes the condensed upper triangle of distances between the series. */
+    public final double[] compute(final List<float[]> pSeries) throws InterruptedException {
+        // Ensure the output can be held in an array.
+        if(DistanceMatrix.getLength(pSeries.size()) > Integer.MAX_VALUE) {
+            // Assert that the matrix is too large.
+            throw new IllegalArgumentException("The distances between " + pSeries.size() + " series can't be held in an array.");
+        }
+        // Allocate the Output.
+        final double[] lOutput = new double[(int)DistanceMatrix.getLength(pSeries.size())];
+        // Compute the Distances.
+        this.compute(pSeries, DoubleBuffer.wrap(lOutput));
+        // Return the Output.
+        return lOutput;
+    }
+
+    /** Computes the condensed upper triangle of distances into a file, as little-endian doubles, through a memory map. */
+    public final void compute(final List<float[]> pSeries, final File pFile) throws InterruptedException, IOException {
+        // Compute the size of the File.
+        final long lBytes = DistanceMatrix.getLength(pSeries.size()) * 8L;
+        // Ensure the output can be mapped at once.
+        if(lBytes > Integer.MAX_VALUE) {
+            // Assert that the matrix is too large.
+            throw new IllegalArgumentException("The distances between " + pSeries.size() + " series can't be mapped at once.");
+        }
+        // Open the File.
+        final RandomAccessFile lFile = new RandomAccessFile(pFile, "rw");
+        try {
+            // Size the File.
+            lFile.setLength(lBytes);
+            // Map the File.
+            final MappedByteBuffer lBuffer = lFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, lBytes);
+            // Compute the Distances.
+            this.compute(pSeries, lBuffer.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer());
+            // Flush the Distances to storage.
+            lBuffer.force();
+        }
+        finally {
+            // Close the File. (The mapping remains valid until it's collected.)
+            lFile.close();
+        }
+    }
+
+    /** Computes the condensed upper triangle of distances into the output, which is written by absolute index. */
+    public final synchronized void compute(final List<float[]> pSeries, final DoubleBuffer pOutput) throws InterruptedException {
+        // Ensure the output is large enough.
+        if(pOutput.capacity() < DistanceMatrix.getLength(pSeries.size())) {
+            // Assert that the output is too small.
+            throw new IllegalArgumentException("Expected room for " + DistanceMatrix.getLength(pSeries.size()) + " distances, not " + pOutput.capacity() + ".");
+        }
+        // Reset the Matrix.
+        this.mSeries = pSeries;
+        this.mOutput = pOutput;
+        this.getCursor().set(0);
+        try {
+            // Score the Rows.
+            final List<Future<Void>> lFutures = this.getExecutorService().invokeAll(this.getWorkers());
+            // Iterate the Futures.
+            for(final Future<Void> lFuture : lFutures) {
+                try {
+                    // Propagate any failures.
+                    lFuture.get();
+                }
+                catch(final ExecutionException pExecutionException) {
+                    // Rethrow the cause.
+                    throw new IllegalStateException("Failed to score a pair.", pExecutionException.getCause());
+                }
+            }
+        }
+        finally {
+            // Release the Matrix.
+            this.mSeries = null;
+            this.mOutput = null;
+        }
+    }
+
+    /** Releases the workers. */
+    public final void close() {
+        // Shutdown the ExecutorService.
+        this.getExecutorService().shutdown();
+    }
+
+    /* Getters. */
+    public final DTW getDTW() {
+        return this.mDTW;
+    }
+
+    public final Window getWindow() {
+        return this.mWindow;
+    }
+
+    private final ExecutorService getExecutorService() {
+        return this.mExecutorService;
+    }
+
+    private final List<Worker> getWorkers() {
+        return this.mWorkers;
+    }
+
+    private final AtomicInteger getCursor() {
+        return this.mCursor;
+    }
+
+}
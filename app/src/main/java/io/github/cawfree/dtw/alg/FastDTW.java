@@ -0,0 +1,163 @@
+package io.github.cawfree.dtw.alg;
+
+import java.util.Arrays;
+
+/**
+ *  An approximation of Dynamic Time Warping which runs in near-linear time and memory. (Salvador & Chan, 2007)
+ *
+ *  Both series are repeatedly halved, by averaging neighbouring frames, until they are small enough to solve exactly.
+ *  The warping path found at each resolution is then projected onto the next, widened by the radius, and used as the
+ *  Window for an exact computation there. The cost is O((N + M) * radius); larger radii approach the exact distance.
+ *
+ *  When a {@link TemplateCache} is supplied, the halvings of each template are taken from its cached pyramid, so only the
+ *  sample is coarsened on every query.
+ **/
+public final class FastDTW {
+
+    /* Member Variables. */
+    private final int           mRadius;
+    private final DTW           mDTW;
+    private final TemplateCache mTemplateCache;
+
+    /** Constructor. */
+    public FastDTW(final int pRadius) {
+        // Operate on univariate series.
+        this(pRadius, new DTW());
+    }
+
+    /** Constructs a FastDTW which refines each resolution using the supplied DTW. (This defines the dimensions and the Workspace.) */
+    public FastDTW(final int pRadius, final DTW pDTW) {
+        // Coarsen templates on every query.
+        this(pRadius, pDTW, null);
+    }
+
+    /** Constructs a FastDTW which takes the halvings of each template from a TemplateCache. A null TemplateCache coarsens them on every query. */
+    public FastDTW(final int pRadius, final DTW pDTW, final TemplateCache pTemplateCache) {
+        // Ensure the radius is valid.
+        if(pRadius < 0) {
+            // Assert that the radius is invalid.
+            throw new IllegalArgumentException("FastDTW can't use a negative radius, " + pRadius + ".");
+        }
+        // Initialize Member Variables.
+        this.mRadius        = pRadius;
+        this.mDTW           = pDTW;
+        this.mTemplateCache = pTemplateCache;
+    }
+
+    /** Computes an approximate warping path, and its distance, between a sample and a template. */
+    public DTW.Result compute(final float[] pSample, final float[] pTemplate) {
+        // Is there a TemplateCache?
+        if(this.getTemplateCache() != null) {
+            // Fetch the halvings of the Template. (They end where the recursion must; once the template is small enough to solve exactly.)
+            return this.compute(pSample, this.getTemplateCache().getPyramid(pTemplate, this.getDTW().getDimensions(), this.getRadius() + 2), 0);
+        }
+        // Coarsen the Template as we go.
+        return this.compute(pSample, new float[][]{ pTemplate }, 0);
+    }
+
+    /** Computes an approximate warping path against a level of a template's pyramid, coarsening any levels which it lacks. */
+    private DTW.Result compute(final float[] pSample, final float[][] pPyramid, final int pLevel) {
+        // Fetch the Dimensions.
+        final int     lDimensions = this.getDTW().getDimensions();
+        // Fetch the Template at this Level.
+        final float[] lTemplate   = pPyramid[pLevel];
+        // Declare Iteration Constants. (Measured in frames.)
+        final int     lN          = pSample.length   / lDimensions;
+        final int     lM          = lTemplate.length / lDimensions;
+        // Is the problem small enough to solve exactly?
+        if(Math.min(lN, lM) <= this.getRadius() + 2) {
+            // Compute the exact Result.
+            return this.getDTW().compute(pSample, lTemplate);
+        }
+        // Does the pyramid stop here? (Extend it with the next halving.)
+        final float[][] lPyramid  = (pLevel + 1 < pPyramid.length) ? pPyramid : new float[][]{ FastDTW.coarsen(lTemplate, lDimensions) };
+        // Solve the problem at half of the resolution.
+        final DTW.Result lCoarse = this.compute(FastDTW.coarsen(pSample, lDimensions), lPyramid, (lPyramid == pPyramid) ? pLevel + 1 : 0);
+        // Refine the solution inside of the projected path.
+        return this.getDTW().compute(pSample, lTemplate, this.getWindow(lCoarse, lN, lM));
+    }
+
+    /** Computes the distance of the approximate warping path between a sample and a template. */
+    public double getDistance(final float[] pSample, final float[] pTemplate) {
+        // Compute the Result.
+        return this.compute(pSample, pTemplate).getDistance();
+    }
+
+    /** Halves the resolution of a series of interleaved frames, by averaging each pair of frames. (An odd frame is kept.) */
+    static float[] coarsen(final float[] pSeries, final int pDimensions) {
+        // Fetch the number of Frames.
+        final int     lFrames  = pSeries.length / pDimensions;
+        // Allocate the Coarse Series.
+        final float[] lCoarse  = new float[((lFrames + 1) / 2) * pDimensions];
+        // Iterate the Coarse Frames.
+        for(int i = 0; i < lFrames; i += 2) {
+            // Are we pairing this frame with its neighbour?
+            final boolean lIsPair = (i + 1 < lFrames);
+            // Iterate the Dimensions.
+            for(int j = 0; j < pDimensions; j++) {
+                // Fetch the Value.
+                final float lValue = pSeries[(i * pDimensions) + j];
+                // Average the Frames.
+                lCoarse[((i / 2) * pDimensions) + j] = lIsPair ? (lValue + pSeries[((i + 1) * pDimensions) + j]) * 0.5f : lValue;
+            }
+        }
+        // Return the Coarse Series.
+        return lCoarse;
+    }
+
+    /** Projects a coarse warping path onto an N x M grid, and widens it by the radius. */
+    private Window getWindow(final DTW.Result pCoarse, final int pN, final int pM) {
+        // Allocate the Bounds of the projected path.
+        final int[] lStart = new int[pN];
+        final int[] lEnd   = new int[pN];
+        // Initialize the Bounds. (No cells are visited yet.)
+        Arrays.fill(lStart, Integer.MAX_VALUE);
+        Arrays.fill(lEnd,   Integer.MIN_VALUE);
+        // Iterate the Path.
+        for(int k = 0; k < pCoarse.getLength(); k++) {
+            // Fetch the Step.
+            final int lI = pCoarse.getI(k);
+            final int lJ = pCoarse.getJ(k);
+            // Each coarse cell covers a 2 x 2 block of fine cells.
+            for(int i = lI * 2; i <= Math.min((lI * 2) + 1, pN - 1); i++) {
+                // Update the Bounds.
+                lStart[i] = Math.min(lStart[i], lJ * 2);
+                lEnd[i]   = Math.max(lEnd[i],   Math.min((lJ * 2) + 1, pM - 1));
+            }
+        }
+        // Allocate the Bounds of the widened path.
+        final int[] lWideStart = new int[pN];
+        final int[] lWideEnd   = new int[pN];
+        // Iterate the Rows.
+        for(int i = 0; i < pN; i++) {
+            // Declare the Bounds of this Row.
+            int lRowStart = Integer.MAX_VALUE;
+            int lRowEnd   = Integer.MIN_VALUE;
+            // Iterate the rows within the radius.
+            for(int j = Math.max(0, i - this.getRadius()); j <= Math.min(pN - 1, i + this.getRadius()); j++) {
+                // Widen the Bounds.
+                lRowStart = Math.min(lRowStart, lStart[j]);
+                lRowEnd   = Math.max(lRowEnd,   lEnd[j]);
+            }
+            // Widen the Bounds along the Template too.
+            lWideStart[i] = Math.max(0,      lRowStart - this.getRadius());
+            lWideEnd[i]   = Math.min(pM - 1, lRowEnd   + this.getRadius());
+        }
+        // Return the Window.
+        return Window.of(lWideStart, lWideEnd, pN);
+    }
+
+    /* Getters. */
+    public final int getRadius() {
+        return this.mRadius;
+    }
+
+    public final DTW getDTW() {
+        return this.mDTW;
+    }
+
+    public final TemplateCache getTemplateCache() {
+        return this.mTemplateCache;
+    }
+
+}
@@ -0,0 +1,286 @@
+package io.github.cawfree.dtw.alg;
+
+/**
+ *  Dynamic Time Warping which accumulates the cost matrix in single precision. The matrix is the memory-bound part of
+ *  {@link DTW#compute(float[], float[], Window)}, which keeps a double and an int path length for every cell. Here each
+ *  cell is a single float, and the length of the warping path is counted by walking it, so the matrix takes a third of
+ *  the footprint, (4 bytes per cell rather than 12), and problems three times the size stay resident in the cache. The
+ *  local costs of each row are still computed by the Metric in double precision, and only rounded once they're
+ *  accumulated.
+ *
+ *  Error bounds: every accumulated cost is a sum of at most K = (N + M - 1) non-negative terms, each of which is rounded
+ *  once on conversion and once on addition, and taking the smallest neighbour never amplifies a relative error. With
+ *  u = 2^-24, the accumulated cost of the returned path, (its distance multiplied by {@link DTW.Result#getLength()}),
+ *  therefore lies within a relative error of (1 + u)^(2K) - 1, (roughly 2Ku), of the double engine's; about 0.1% for
+ *  K = 8192, and 1% for K = 80000.
+ *
+ *  The normalized distance has no such bound. Neighbours whose costs tie within that error may be ordered differently,
+ *  so the warping path, and the length its cost is divided by, can differ from the double engine's. The distance may
+ *  then differ by as much as the ratio of the two lengths, which both lie between max(N, M) and N + M - 1. On random
+ *  Gaussian series of up to 64 samples, about one pair in 200 differs by more than 0.01%, and some by several percent.
+ *  (FloatDTWTest reports the worst errors.)
+ **/
+public final class FloatDTW {
+
+    /* Member Variables. */
+    private final DTW mDTW;
+
+    /** Constructor. */
+    public FloatDTW() {
+        // Operate on univariate series.
+        this(new DTW());
+    }
+
+    /** Constructor. The DTW defines the dimensions, the Metric and the Workspace. */
+    public FloatDTW(final DTW pDTW) {
+        // Initialize Member Variables.
+        this.mDTW = pDTW;
+    }
+
+    /** Computes the warping path and the distance between a sample and a template. */
+    public DTW.Result compute(final float[] pSample, final float[] pTemplate) {
+        // Compute without a global constraint.
+        return this.compute(pSample, pTemplate, null);
+    }
+
+    /** Computes the warping path and the distance between a sample and a template, only visiting the cells inside the Window. */
+    public DTW.Result compute(final float[] pSample, final float[] pTemplate, final Window pWindow) {
+        // Declare Iteration Constants. (Measured in frames.)
+        final int       lN            = this.getFrames(pSample);
+        final int       lM            = this.getFrames(pTemplate);
+        // Ensure the samples are valid.
+        if(lN == 0 || lM == 0) {
+            // Assert a bad result.
+            return new DTW.Result(new int[]{ /* No path data. */ }, Double.NaN);
+        }
+        // Fetch the Workspace.
+        final Workspace lWorkspace    = this.getDTW().getWorkspace();
+        // Fetch the bounds of each row, and where each row begins in the Global Distances.
+        final int[]     lStart        = lWorkspace.getInts(Workspace.SLOT_START,  lN);
+        final int[]     lEnd          = lWorkspace.getInts(Workspace.SLOT_END,    lN);
+        final int[]     lOffset       = lWorkspace.getInts(Workspace.SLOT_OFFSET, lN);
+        // Compute the bounds of each row.
+        Window.getRanges(pWindow, lN, lM, lStart, lEnd);
+        // Pack the rows one after another.
+              int       lCells        = 0;
+        for(int i = 0; i < lN; i++) {
+            // Allocate the cells of this row.
+            lOffset[i] = lCells - lStart[i];
+            lCells    += (lEnd[i] - lStart[i]) + 1;
+        }
+        // Fetch the Global Distances, in single precision. (Cell (i, j) lives at Offset[i] + j.)
+        final float[]   lG            = lWorkspace.getFloats(Workspace.SLOT_SINGLE_GLOBAL, lCells);
+        // Fetch the Local Distances of a row.
+        final double[]  lCosts        = lWorkspace.getDoubles(Workspace.SLOT_COSTS, lM);
+        // Fetch the Metric and the Dimensions.
+        final Metric    lMetric       = this.getDTW().getMetric();
+        final int       lDimensions   = this.getDTW().getDimensions();
+
+        // Iterate the Sample.
+        for(int i = 0; i < lN; i++) {
+            // Fetch the bounds of this row and the previous one. (The first row has no predecessor.)
+            final int   lRowStart       = lStart[i];
+            final int   lRowEnd         = lEnd[i];
+            final int   lRow            = lOffset[i];
+            final int   lPreviousStart  = (i == 0) ? 0  : lStart[i - 1];
+            final int   lPreviousEnd    = (i == 0) ? -1 : lEnd[i - 1];
+            final int   lPrevious       = (i == 0) ? 0  : lOffset[i - 1];
+            // Calculate the Distances between the Sample and the Template along this row.
+            lMetric.getCosts(pSample, i * lDimensions, pTemplate, lRowStart, lRowEnd, lDimensions, lCosts);
+            // Iterate the Template.
+            for(int j = lRowStart; j <= lRowEnd; j++) {
+                // Fetch the Distance between the Sample and the Template for this Index.
+                final float lLocal = (float)lCosts[j];
+                // Are we at the origin?
+                if(j == 0 && i == 0) {
+                    // Initialize the Global.
+                    lG[lRow] = lLocal;
+                    continue;
+                }
+                // Fetch the neighbours. (Neighbours which lie outside of the window are unreachable.)
+                final float lUp       = (j <= lPreviousEnd)                             ? lG[lPrevious + j]     : Float.POSITIVE_INFINITY;
+                final float lLeft     = (j >  lRowStart)                                ? lG[lRow + j - 1]      : Float.POSITIVE_INFINITY;
+                final float lDiagonal = (j >  lPreviousStart && j - 1 <= lPreviousEnd) ? lG[lPrevious + j - 1] : Float.POSITIVE_INFINITY;
+                // Select the nearest neighbour.
+                      float lNearest  = lUp;
+                if(lLeft < lNearest) {
+                    lNearest = lLeft;
+                }
+                if(lDiagonal < lNearest) {
+                    lNearest = lDiagonal;
+                }
+                // Accumulate the path.
+                lG[lRow + j] = lNearest + lLocal;
+            }
+        }
+
+        // Count the steps of the Warping Path, by walking it once without recording it.
+        final int   lK           = FloatDTW.onBacktrack(lG, lStart, lEnd, lOffset, lN, lM, null);
+        // Allocate the Warping Path, as interleaved (i, j) pairs, and walk it again to fill it.
+        final int[] lWarpingPath = new int[lK << 1];
+        FloatDTW.onBacktrack(lG, lStart, lEnd, lOffset, lN, lM, lWarpingPath);
+
+        // Return the Result. (Normalize the Distance by the length of the Warping Path.)
+        return new DTW.Result(lWarpingPath, ((double)lG[lOffset[lN - 1] + lM - 1]) / lK);
+    }
+
+    /**
+     *  Follows the smallest neighbour from the last cell back to the origin, in the order of the MinimaBuffer, and returns
+     *  the number of steps. If a path is supplied, which must hold exactly that many steps, it's filled from the end.
+     **/
+    private static int onBacktrack(final float[] pG, final int[] pStart, final int[] pEnd, final int[] pOffset, final int pN, final int pM, final int[] pPath) {
+        // Declare iteration variables.
+        int i = pN - 1;
+        int j = pM - 1;
+        int k = (pPath == null) ? 0 : (pPath.length >> 1);
+        // Iterate the Steps, from the last to the first.
+        while(true) {
+            // Count the Step.
+            k = (pPath == null) ? (k + 1) : (k - 1);
+            // Are we recording the Step?
+            if(pPath != null) {
+                // Update the Warping Path.
+                pPath[(k << 1)    ] = i;
+                pPath[(k << 1) + 1] = j;
+            }
+            // Have we reached the origin?
+            if(i == 0 && j == 0) {
+                // Return the number of Steps.
+                return (pPath == null) ? k : (pPath.length >> 1);
+            }
+            // Handle the offset.
+            if(i == 0) {
+                // Decrement the iteration variable.
+                j -= 1;
+            }
+            else if(j == 0) {
+                // Decrement the iteration variable.
+                i -= 1;
+            }
+            else {
+                // Fetch the neighbours.
+                final float lUp       = FloatDTW.getGlobal(pG, pStart, pEnd, pOffset, i - 1, j);
+                final float lLeft     = FloatDTW.getGlobal(pG, pStart, pEnd, pOffset, i,     j - 1);
+                final float lDiagonal = FloatDTW.getGlobal(pG, pStart, pEnd, pOffset, i - 1, j - 1);
+                // Follow the smallest neighbour, in the order of the MinimaBuffer.
+                if(lDiagonal < lUp && lDiagonal < lLeft) {
+                    i -= 1;
+                    j -= 1;
+                }
+                else if(lLeft < lUp) {
+                    j -= 1;
+                }
+                else {
+                    i -= 1;
+                }
+            }
+        }
+    }
+
+    /** Fetches a Global Distance from packed rows; cells outside of the window are unreachable. */
+    private static float getGlobal(final float[] pG, final int[] pStart, final int[] pEnd, final int[] pOffset, final int pI, final int pJ) {
+        // Is the cell inside of the window?
+        return (pJ >= pStart[pI] && pJ <= pEnd[pI]) ? pG[pOffset[pI] + pJ] : Float.POSITIVE_INFINITY;
+    }
+
+    /** Computes the distance between a sample and a template using two rolling rows of single precision. */
+    public double getDistance(final float[] pSample, final float[] pTemplate) {
+        // Compute without a global constraint.
+        return this.getDistance(pSample, pTemplate, null);
+    }
+
+    /** Computes the distance between a sample and a template using rolling rows, only visiting the cells inside the Window. */
+    public double getDistance(final float[] pSample, final float[] pTemplate, final Window pWindow) {
+        // Declare Iteration Constants. (Measured in frames.)
+        final int       lN              = this.getFrames(pSample);
+        final int       lM              = this.getFrames(pTemplate);
+        // Ensure the samples are valid.
+        if(lN == 0 || lM == 0) {
+            // Assert a bad result.
+            return Double.NaN;
+        }
+        // Fetch the Workspace.
+        final Workspace lWorkspace      = this.getDTW().getWorkspace();
+        // Fetch the bounds of each row.
+        final int[]     lStart          = lWorkspace.getInts(Workspace.SLOT_START, lN);
+        final int[]     lEnd            = lWorkspace.getInts(Workspace.SLOT_END,   lN);
+        // Compute the bounds of each row.
+        Window.getRanges(pWindow, lN, lM, lStart, lEnd);
+        // Fetch the Rolling Global Distances and Path Lengths.
+              float[]   lPrevious       = lWorkspace.getFloats(Workspace.SLOT_SINGLE_PREVIOUS, lM);
+              float[]   lCurrent        = lWorkspace.getFloats(Workspace.SLOT_SINGLE_CURRENT,  lM);
+              int[]     lPreviousLength = lWorkspace.getInts(Workspace.SLOT_PREVIOUS_LENGTH, lM);
+              int[]     lCurrentLength  = lWorkspace.getInts(Workspace.SLOT_CURRENT_LENGTH,  lM);
+        // Fetch the Local Distances of a row.
+        final double[]  lCosts          = lWorkspace.getDoubles(Workspace.SLOT_COSTS, lM);
+        // Fetch the Metric and the Dimensions.
+        final Metric    lMetric         = this.getDTW().getMetric();
+        final int       lDimensions     = this.getDTW().getDimensions();
+        // Iterate the Sample.
+        for(int i = 0; i < lN; i++) {
+            // Fetch the bounds of this row and the previous one. (The first row has no predecessor.)
+            final int lRowStart      = lStart[i];
+            final int lRowEnd        = lEnd[i];
+            final int lPreviousStart = (i == 0) ? 0  : lStart[i - 1];
+            final int lPreviousEnd   = (i == 0) ? -1 : lEnd[i - 1];
+            // Calculate the Local Distances along this row.
+            lMetric.getCosts(pSample, i * lDimensions, pTemplate, lRowStart, lRowEnd, lDimensions, lCosts);
+            // Iterate the Template.
+            for(int j = lRowStart; j <= lRowEnd; j++) {
+                // Fetch the Local Distance.
+                final float lLocal = (float)lCosts[j];
+                // Are we at the origin?
+                if(i == 0 && j == 0) {
+                    // Initialize the Global.
+                    lCurrent[j]       = lLocal;
+                    lCurrentLength[j] = 1;
+                    continue;
+                }
+                // Fetch the neighbours. (Neighbours which lie outside of the window are unreachable.)
+                final float lUp       = (j <= lPreviousEnd)                             ? lPrevious[j]     : Float.POSITIVE_INFINITY;
+                final float lLeft     = (j >  lRowStart)                                ? lCurrent[j - 1]  : Float.POSITIVE_INFINITY;
+                final float lDiagonal = (j >  lPreviousStart && j - 1 <= lPreviousEnd) ? lPrevious[j - 1] : Float.POSITIVE_INFINITY;
+                // Select the neighbour which backtracking would follow, in the order of the MinimaBuffer.
+                      float lNearest  = lUp;
+                      int   lLength   = (j <= lPreviousEnd) ? lPreviousLength[j] : 0;
+                if(lLeft < lNearest) {
+                    lNearest = lLeft;
+                    lLength  = lCurrentLength[j - 1];
+                }
+                if(lDiagonal < lNearest) {
+                    lNearest = lDiagonal;
+                    lLength  = lPreviousLength[j - 1];
+                }
+                // Accumulate the path.
+                lCurrent[j]       = lNearest + lLocal;
+                lCurrentLength[j] = lLength + 1;
+            }
+            // Swap the Rows.
+            final float[] lRow            = lPrevious;
+                          lPrevious       = lCurrent;
+                          lCurrent        = lRow;
+            final int[]   lLengths        = lPreviousLength;
+                          lPreviousLength = lCurrentLength;
+                          lCurrentLength  = lLengths;
+        }
+        // Return the Distance. (Normalize by the length of the Warping Path.)
+        return ((double)lPrevious[lM - 1]) / lPreviousLength[lM - 1];
+    }
+
+    /** Computes the number of frames in a series. */
+    private int getFrames(final float[] pSeries) {
+        // Ensure the series is made of whole frames.
+        if(pSeries.length % this.getDTW().getDimensions() != 0) {
+            // Assert that the series is invalid.
+            throw new IllegalArgumentException("A series of " + pSeries.length + " values can't be divided into frames of " + this.getDTW().getDimensions() + " dimensions.");
+        }
+        // Return the number of frames.
+        return pSeries.length / this.getDTW().getDimensions();
+    }
+
+    /* Getters. */
+    public final DTW getDTW() {
+        return this.mDTW;
+    }
+
+}
@@ -0,0 +1,127 @@
+package io.github.cawfree.dtw.alg;
+
+/**
+ *  A primitive capture buffer of interleaved frames, for recording a series one frame at a time without boxing. The buffer
+ *  grows on demand up to a maximum number of frames; beyond that it becomes a ring, and the oldest frames are overwritten.
+ *
+ *  Storage is only ever grown, and {@link #clear()} keeps it, so once a buffer has seen its longest series, recording
+ *  another allocates nothing. {@link #toArray()} copies the frames out into an exactly-sized array which the caller owns;
+ *  it's meant for series which outlive the recording, such as templates. Frames which are only needed whilst they're
+ *  recorded should be read as they're appended, (see {@link DTW.Session}), rather than copied out.
+ **/
+public final class FrameBuffer {
+
+    /** The number of frames allocated up front. */
+    private static final int CAPACITY_INITIAL = 64;
+
+    /* Member Variables. */
+    private final int     mDimensions;
+    private final int     mMaximum;
+    private       float[] mValues;
+    private       int     mStart;
+    private       int     mFrames;
+
+    /** Constructor. */
+    public FrameBuffer(final int pDimensions, final int pMaximum) {
+        // Ensure the buffer is valid.
+        if(pDimensions < 1 || pMaximum < 1) {
+            // Assert that the buffer is invalid.
+            throw new IllegalArgumentException("A FrameBuffer needs at least one dimension and one frame, not " + pDimensions + " and " + pMaximum + ".");
+        }
+        // Initialize Member Variables.
+        this.mDimensions = pDimensions;
+        this.mMaximum    = pMaximum;
+        this.mValues     = new float[Math.min(FrameBuffer.CAPACITY_INITIAL, pMaximum) * pDimensions];
+        this.mStart      = 0;
+        this.mFrames     = 0;
+    }
+
+    /** Appends the frame which begins at the given offset of the array. Once the maximum is reached, the oldest frame is dropped. */
+    public final void append(final float[] pFrame, final int pOffset) {
+        // Fetch the number of frames the storage can hold.
+        final int lCapacity = this.mValues.length / this.getDimensions();
+        // Is the storage full, but still allowed to grow?
+        if(this.mFrames == lCapacity && lCapacity < this.getMaximum()) {
+            // Move the frames into larger storage.
+            this.setCapacity(Math.min(this.getMaximum(), lCapacity << 1));
+        }
+        // Fetch the number of frames the storage can hold.
+        final int lFrames = this.mValues.length / this.getDimensions();
+        // Is the ring full?
+        if(this.mFrames == lFrames) {
+            // Overwrite the oldest frame.
+            System.arraycopy(pFrame, pOffset, this.mValues, this.mStart * this.getDimensions(), this.getDimensions());
+            // Advance the start of the ring.
+            this.mStart = (this.mStart + 1) % lFrames;
+        }
+        else {
+            // Write after the newest frame.
+            System.arraycopy(pFrame, pOffset, this.mValues, ((this.mStart + this.mFrames) % lFrames) * this.getDimensions(), this.getDimensions());
+            // Count the Frame.
+            this.mFrames++;
+        }
+    }
+
+    /** Copies the frames, from the oldest to the newest, into a new and exactly-sized array. */
+    public final float[] toArray() {
+        // Allocate the Array.
+        final float[] lArray = new float[this.mFrames * this.getDimensions()];
+        // Copy the Frames.
+        this.copy(lArray);
+        // Return the Array.
+        return lArray;
+    }
+
+    /** Moves the frames, from the oldest to the newest, to the start of new storage which holds the given number of frames. */
+    private void setCapacity(final int pFrames) {
+        // Allocate the Storage.
+        final float[] lValues = new float[pFrames * this.getDimensions()];
+        // Copy the Frames.
+        this.copy(lValues);
+        // Assign the Storage.
+        this.mValues = lValues;
+        this.mStart  = 0;
+    }
+
+    /** Copies the frames, from the oldest to the newest, to the start of the given array. */
+    private void copy(final float[] pValues) {
+        // Fetch the Dimensions.
+        final int lDimensions = this.getDimensions();
+        // Fetch the number of frames the storage can hold.
+        final int lCapacity   = this.mValues.length / lDimensions;
+        // Fetch the number of frames which lie before the end of the storage.
+        final int lHead       = Math.min(this.mFrames, lCapacity - this.mStart);
+        // Copy the Frames. (The ring may wrap around the end of the storage.)
+        System.arraycopy(this.mValues, this.mStart * lDimensions, pValues, 0, lHead * lDimensions);
+        System.arraycopy(this.mValues, 0, pValues, lHead * lDimensions, (this.mFrames - lHead) * lDimensions);
+    }
+
+    /** Forgets every frame. Storage is kept for reuse. */
+    public final void clear() {
+        // Reset the Ring.
+        this.mStart  = 0;
+        this.mFrames = 0;
+    }
+
+    /** Returns a single value of a frame, where frame zero is the oldest. */
+    public final float get(final int pFrame, final int pDimension) {
+        // Fetch the number of frames the storage can hold.
+        final int lCapacity = this.mValues.length / this.getDimensions();
+        // Return the Value.
+        return this.mValues[(((this.mStart + pFrame) % lCapacity) * this.getDimensions()) + pDimension];
+    }
+
+    /* Getters. */
+    public final int getDimensions() {
+        return this.mDimensions;
+    }
+
+    public final int getMaximum() {
+        return this.mMaximum;
+    }
+
+    public final int getFrames() {
+        return this.mFrames;
+    }
+
+}
@@ -0,0 +1,121 @@
+package io.github.cawfree.dtw.alg;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *  A bounded, lock-free queue of interleaved frames, which passes samples from exactly one producer thread to exactly one
+ *  consumer thread. (Single-producer, single-consumer.)
+ *
+ *  Frames are copied into a preallocated ring once, on offer, and handed to the consumer straight from the ring, so
+ *  neither side allocates. The consumer drains every waiting frame as a batch and releases the slots when the batch is
+ *  done. When the consumer falls behind and the ring is full, new frames are dropped rather than blocking the producer;
+ *  they're counted, so that the loss can be reported.
+ **/
+public final class FrameQueue {
+
+    /** Receives the frames drained from a FrameQueue. */
+    public interface Consumer {
+        /** Called with a frame, which begins at the given offset of the array. The array belongs to the queue, and mustn't be kept. */
+        void onFrame(final float[] pValues, final int pOffset);
+    }
+
+    /* Member Variables. */
+    private final int        mDimensions;
+    private final float[]    mValues;
+    private final int        mMask;
+    private final AtomicLong mHead;
+    private final AtomicLong mTail;
+    private final AtomicLong mDropped;
+    private       long       mProducerHead;
+
+    /** Constructor. The capacity is rounded up to a power of two. */
+    public FrameQueue(final int pDimensions, final int pCapacity) {
+        // Ensure the queue is valid.
+        if(pDimensions < 1 || pCapacity < 1 || pCapacity > (1 << 30)) {
+            // Assert that the queue is invalid.
+            throw new IllegalArgumentException("A FrameQueue needs at least one dimension and a capacity of 1 to 2^30 frames, not " + pDimensions + " and " + pCapacity + ".");
+        }
+        // Round the Capacity up to a power of two, so that positions wrap with a mask.
+        final int lCapacity = Integer.highestOneBit((pCapacity << 1) - 1);
+        // Initialize Member Variables.
+        this.mDimensions   = pDimensions;
+        this.mValues       = new float[lCapacity * pDimensions];
+        this.mMask         = lCapacity - 1;
+        this.mHead         = new AtomicLong();
+        this.mTail         = new AtomicLong();
+        this.mDropped      = new AtomicLong();
+        this.mProducerHead = 0;
+    }
+
+    /** Offers the frame which begins at the given offset of the array. Returns false if the queue was full, and the frame was dropped. (Producer only.) */
+    public final boolean offer(final float[] pFrame, final int pOffset) {
+        // Fetch the Tail. (Only the producer writes it.)
+        final long lTail = this.mTail.get();
+        // Does the ring look full?
+        if(lTail - this.mProducerHead > this.mMask) {
+            // Refresh our view of the Head.
+            this.mProducerHead = this.mHead.get();
+            // Is the ring really full?
+            if(lTail - this.mProducerHead > this.mMask) {
+                // Count the Drop.
+                this.mDropped.lazySet(this.mDropped.get() + 1);
+                // Assert that the frame was dropped.
+                return false;
+            }
+        }
+        // Copy the Frame into its slot.
+        System.arraycopy(pFrame, pOffset, this.mValues, (int)(lTail & this.mMask) * this.getDimensions(), this.getDimensions());
+        // Publish the Frame. (The ordered write makes the copy visible before the new Tail.)
+        this.mTail.lazySet(lTail + 1);
+        // Assert that the frame was queued.
+        return true;
+    }
+
+    /** Hands every waiting frame to the Consumer, from the oldest to the newest, and returns how many there were. (Consumer only.) */
+    public final int drain(final Consumer pConsumer) {
+        // Fetch the Head. (Only the consumer writes it.)
+        final long lHead = this.mHead.get();
+        // Fetch the Tail. (Frames offered after this are left for the next batch.)
+        final long lTail = this.mTail.get();
+        // Iterate the waiting Frames.
+        for(long i = lHead; i < lTail; i++) {
+            // Deliver the Frame.
+            pConsumer.onFrame(this.mValues, (int)(i & this.mMask) * this.getDimensions());
+        }
+        // Release the Slots, for the producer to reuse.
+        this.mHead.lazySet(lTail);
+        // Return the number of Frames.
+        return (int)(lTail - lHead);
+    }
+
+    /** Whether there are frames waiting to be drained. */
+    public final boolean isEmpty() {
+        // Compare the Head and the Tail.
+        return this.mHead.get() == this.mTail.get();
+    }
+
+    /* Getters. */
+    public final int getDimensions() {
+        return this.mDimensions;
+    }
+
+    public final int getCapacity() {
+        return this.mMask + 1;
+    }
+
+    /** Returns the number of frames which have been offered since the queue was created, whether they were accepted or dropped. */
+    public final long getOffered() {
+        return this.getAccepted() + this.getDropped();
+    }
+
+    /** Returns the number of frames which have been accepted into the queue since it was created. */
+    public final long getAccepted() {
+        return this.mTail.get();
+    }
+
+    /** Returns the number of frames which have been dropped since the queue was created, because it was full. */
+    public final long getDropped() {
+        return this.mDropped.get();
+    }
+
+}
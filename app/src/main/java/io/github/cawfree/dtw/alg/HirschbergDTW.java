@@ -0,0 +1,397 @@
+package io.github.cawfree.dtw.alg;
+
+import java.util.Arrays;
+
+/**
+ *  Recovers the exact warping path of {@link DTW#compute(float[], float[], Window)} in linear space, by Hirschberg-style
+ *  divide and conquer.
+ *
+ *  The full matrix engine has to keep every accumulated cost, because backtracking from the last cell may visit any of
+ *  them. Here, the matrix is only ever swept with rolling rows. A sweep across a rectangle of the matrix carries, for each
+ *  cell beyond a split line, where the backtracking path from that cell would first cross it; so a single sweep reveals
+ *  where the path from the corner of the rectangle crosses its middle, and the rectangle can be replaced by the two
+ *  smaller rectangles either side of the crossing. Backtracking compares costs which depend upon the whole of the matrix
+ *  above and to the left, so each rectangle is given the accumulated costs along its top and left edges; the costs it
+ *  computes are then identical to the full matrix, so ties are broken the same way and the path, its length and the
+ *  distance all match {@link DTW#compute(float[], float[], Window)} exactly.
+ *
+ *  Rectangles are split across their longer side, so the edges which are kept at each level of the recursion shrink
+ *  geometrically, and memory is O(N + M). A rectangle and the edge of its second half are swept once each, which comes
+ *  to a little over twice the work of the full matrix. Small rectangles are backtracked directly.
+ **/
+public final class HirschbergDTW {
+
+    /** The largest number of cells which are backtracked directly, rather than divided. */
+    private static final int SIZE_DIRECT = 1 << 12;
+
+    /* Directions. (The order in which backtracking prefers neighbours.) */
+    private static final int DIRECTION_UP       = 0;
+    private static final int DIRECTION_LEFT     = 1;
+    private static final int DIRECTION_DIAGONAL = 2;
+
+    /** Defines the state of a single alignment. */
+    private static final class Problem {
+        /* Member Variables. */
+        private final float[] mSample;
+        private final float[] mTemplate;
+        private final int[]   mStart;
+        private final int[]   mEnd;
+        private final int[]   mPath;
+        private       int     mStep;
+        private       double  mGlobal;
+        /** Constructor. */
+        private Problem(final float[] pSample, final float[] pTemplate, final int[] pStart, final int[] pEnd, final int pN, final int pM) {
+            // Initialize Member Variables. (The path is filled from the end; it can't be longer than N + M - 1 steps.)
+            this.mSample   = pSample;
+            this.mTemplate = pTemplate;
+            this.mStart    = pStart;
+            this.mEnd      = pEnd;
+            this.mPath     = new int[((pN + pM) - 1) << 1];
+            this.mStep     = (pN + pM) - 1;
+            this.mGlobal   = Double.NaN;
+        }
+        /** Prepends a step to the Warping Path. */
+        private void onStep(final int pI, final int pJ) {
+            // Move onto the preceding step.
+            this.mStep--;
+            // Update the Warping Path.
+            this.mPath[(this.mStep << 1)    ] = pI;
+            this.mPath[(this.mStep << 1) + 1] = pJ;
+        }
+    }
+
+    /* Member Variables. */
+    private final DTW mDTW;
+
+    /** Constructor. */
+    public HirschbergDTW() {
+        // Operate on univariate series.
+        this(new DTW());
+    }
+
+    /** Constructor. The DTW defines the dimensions, the Metric and the Workspace. */
+    public HirschbergDTW(final DTW pDTW) {
+        // Initialize Member Variables.
+        this.mDTW = pDTW;
+    }
+
+    /** Computes the warping path and the distance between a sample and a template. */
+    public DTW.Result compute(final float[] pSample, final float[] pTemplate) {
+        // Compute without a global constraint.
+        return this.compute(pSample, pTemplate, null);
+    }
+
+    /** Computes the warping path and the distance between a sample and a template, only visiting the cells inside the Window. */
+    public DTW.Result compute(final float[] pSample, final float[] pTemplate, final Window pWindow) {
+        // Declare Iteration Constants. (Measured in frames.)
+        final int       lN        = this.getFrames(pSample);
+        final int       lM        = this.getFrames(pTemplate);
+        // Ensure the samples are valid.
+        if(lN == 0 || lM == 0) {
+            // Assert a bad result.
+            return new DTW.Result(new int[]{ /* No path data. */ }, Double.NaN);
+        }
+        // Fetch the bounds of each row.
+        final int[]     lStart    = this.getDTW().getWorkspace().getInts(Workspace.SLOT_START, lN);
+        final int[]     lEnd      = this.getDTW().getWorkspace().getInts(Workspace.SLOT_END,   lN);
+        // Compute the bounds of each row.
+        Window.getRanges(pWindow, lN, lM, lStart, lEnd);
+        // Allocate the Problem.
+        final Problem   lProblem  = new Problem(pSample, pTemplate, lStart, lEnd, lN, lM);
+        // Nothing lies above or to the left of the matrix.
+        final double[]  lTop      = HirschbergDTW.getUnreachable(lM + 1);
+        final double[]  lLeft     = HirschbergDTW.getUnreachable(lN);
+        // Trace the Warping Path from the last cell to the origin.
+        this.onTrace(lProblem, 0, lN - 1, 0, lM - 1, lTop, 0, lLeft, 0);
+        // Fetch the length of the Warping Path.
+        final int       lK        = ((lN + lM) - 1) - lProblem.mStep;
+        // Allocate the Warping Path.
+        final int[]     lPath     = new int[lK << 1];
+        // Copy the steps which were written.
+        System.arraycopy(lProblem.mPath, lProblem.mStep << 1, lPath, 0, lK << 1);
+        // Return the Result. (Normalize the Distance by the length of the Warping Path.)
+        return new DTW.Result(lPath, lProblem.mGlobal / lK);
+    }
+
+    /**
+     *  Prepends the path from the last cell of a rectangle back to its first. The path is known to pass through both corners.
+     *  The top edge holds the accumulated costs of row (R0 - 1), from column (C0 - 1) to C1, and the left edge holds those of
+     *  column (C0 - 1), from row R0 to R1.
+     **/
+    private void onTrace(final Problem pProblem, final int pR0, final int pR1, final int pC0, final int pC1, final double[] pTop, final int pTopOffset, final double[] pLeft, final int pLeftOffset) {
+        // Fetch the dimensions of the rectangle.
+        final int lHeight = (pR1 - pR0) + 1;
+        final int lWidth  = (pC1 - pC0) + 1;
+        // Is the rectangle small enough to backtrack directly?
+        if(lHeight * (long)lWidth <= HirschbergDTW.SIZE_DIRECT) {
+            // Backtrack the rectangle.
+            this.onBacktrack(pProblem, pR0, pR1, pC0, pC1, pTop, pTopOffset, pLeft, pLeftOffset);
+            return;
+        }
+        // Is the rectangle taller than it is wide?
+        if(lHeight >= lWidth) {
+            // Split beneath this row.
+            final int      lSplit    = pR0 + (lHeight >> 1) - 1;
+            // Allocate the accumulated costs of the split row, from column (C0 - 1).
+            final double[] lRow      = new double[lWidth + 1];
+            // Find the cell of the row beneath the split where the path crosses it, and the direction it leaves in.
+            final int      lLabel    = this.onSweep(pProblem, pR0, pR1, pC0, pC1, pTop, pTopOffset, pLeft, pLeftOffset, lSplit, -1, lRow, lSplit, null, -1);
+            final int      lEntry    = lLabel >> 2;
+            final int      lExit     = ((lLabel & 3) == HirschbergDTW.DIRECTION_DIAGONAL) ? lEntry - 1 : lEntry;
+            // Fetch the left edge of the lower rectangle. (Sweep the cells to its left, unless it shares the left edge.)
+            final double[] lColumn   = (lEntry == pC0) ? pLeft : new double[pR1 - lSplit];
+            final int      lOffset   = (lEntry == pC0) ? pLeftOffset + ((lSplit + 1) - pR0) : 0;
+            if(lEntry != pC0) {
+                this.onSweep(pProblem, lSplit + 1, pR1, pC0, lEntry - 1, lRow, 0, pLeft, pLeftOffset + ((lSplit + 1) - pR0), -1, -1, null, -1, lColumn, lEntry - 1);
+            }
+            // Trace the lower rectangle, then the upper. (The path is written from the end.)
+            this.onTrace(pProblem, lSplit + 1, pR1, lEntry, pC1, lRow, lEntry - pC0, lColumn, lOffset);
+            this.onTrace(pProblem, pR0, lSplit, pC0, lExit, pTop, pTopOffset, pLeft, pLeftOffset);
+        }
+        else {
+            // Split to the right of this column.
+            final int      lSplit    = pC0 + (lWidth >> 1) - 1;
+            // Allocate the accumulated costs of the split column, from row R0.
+            final double[] lColumn   = new double[lHeight];
+            // Find the cell of the column to the right of the split where the path crosses it, and the direction it leaves in.
+            final int      lLabel    = this.onSweep(pProblem, pR0, pR1, pC0, pC1, pTop, pTopOffset, pLeft, pLeftOffset, -1, lSplit, null, -1, lColumn, lSplit);
+            final int      lEntry    = lLabel >> 2;
+            final int      lExit     = ((lLabel & 3) == HirschbergDTW.DIRECTION_DIAGONAL) ? lEntry - 1 : lEntry;
+            // Fetch the top edge of the right rectangle. (Sweep the cells above it, unless it shares the top edge.)
+            final double[] lRow      = (lEntry == pR0) ? pTop : new double[(pC1 - lSplit) + 1];
+            final int      lOffset   = (lEntry == pR0) ? pTopOffset + (lSplit - (pC0 - 1)) : 0;
+            if(lEntry != pR0) {
+                this.onSweep(pProblem, pR0, lEntry - 1, lSplit + 1, pC1, pTop, pTopOffset + (lSplit - (pC0 - 1)), lColumn, 0, -1, -1, lRow, lEntry - 1, null, -1);
+            }
+            // Trace the right rectangle, then the left. (The path is written from the end.)
+            this.onTrace(pProblem, lEntry, pR1, lSplit + 1, pC1, lRow, lOffset, lColumn, lEntry - pR0);
+            this.onTrace(pProblem, pR0, lExit, pC0, lSplit, pTop, pTopOffset, pLeft, pLeftOffset);
+        }
+    }
+
+    /**
+     *  Sweeps the accumulated costs across a rectangle with rolling rows, optionally capturing a row, (from column C0 - 1),
+     *  and a column, (from row R0). When a split row or column is given, each cell beyond it is labelled with the cell just
+     *  beyond the split at which backtracking from it would cross, (its row or column, shifted left by two), and the
+     *  direction in which backtracking would leave that cell; the label of the last cell is returned.
+     **/
+    private int onSweep(final Problem pProblem, final int pR0, final int pR1, final int pC0, final int pC1, final double[] pTop, final int pTopOffset, final double[] pLeft, final int pLeftOffset, final int pSplitRow, final int pSplitColumn, final double[] pRow, final int pRowIndex, final double[] pColumn, final int pColumnIndex) {
+        // Fetch the width of the rectangle.
+        final int      lWidth         = (pC1 - pC0) + 1;
+        // Fetch the Workspace.
+        final Workspace lWorkspace    = this.getDTW().getWorkspace();
+        // Fetch the Rolling Global Distances. (Index zero holds the left edge.)
+              double[] lPrevious      = lWorkspace.getDoubles(Workspace.SLOT_PREVIOUS, lWidth + 1);
+              double[] lCurrent       = lWorkspace.getDoubles(Workspace.SLOT_CURRENT,  lWidth + 1);
+        // Fetch the Rolling Labels.
+              int[]    lPreviousLabel = lWorkspace.getInts(Workspace.SLOT_PREVIOUS_LENGTH, lWidth + 1);
+              int[]    lCurrentLabel  = lWorkspace.getInts(Workspace.SLOT_CURRENT_LENGTH,  lWidth + 1);
+        // Fetch the Local Distances of a row.
+        final double[] lCosts         = lWorkspace.getDoubles(Workspace.SLOT_COSTS, pProblem.mTemplate.length / this.getDTW().getDimensions());
+        // Fetch the Metric and the Dimensions.
+        final Metric   lMetric        = this.getDTW().getMetric();
+        final int      lDimensions    = this.getDTW().getDimensions();
+        // Are we labelling cells?
+        final boolean  lLabelled      = (pSplitRow >= 0 || pSplitColumn >= 0);
+        // Initialize the previous row with the top edge. (Nothing beyond the rectangle is labelled.)
+        System.arraycopy(pTop, pTopOffset, lPrevious, 0, lWidth + 1);
+        Arrays.fill(lPreviousLabel, 0, lWidth + 1, -1);
+        // Declare the Label of the last cell.
+              int      lLabel         = -1;
+        // Iterate the rows of the rectangle.
+        for(int i = pR0; i <= pR1; i++) {
+            // Fetch the bounds of this row, within the rectangle.
+            final int lRowStart = Math.max(pC0, pProblem.mStart[i]);
+            final int lRowEnd   = Math.min(pC1, pProblem.mEnd[i]);
+            // Initialize the left edge.
+            lCurrent[0]      = pLeft[pLeftOffset + (i - pR0)];
+            lCurrentLabel[0] = -1;
+            // Calculate the Local Distances along this row.
+            if(lRowStart <= lRowEnd) {
+                lMetric.getCosts(pProblem.mSample, i * lDimensions, pProblem.mTemplate, lRowStart, lRowEnd, lDimensions, lCosts);
+            }
+            // Iterate the columns of the rectangle.
+            for(int j = pC0; j <= pC1; j++) {
+                // Fetch the index of the cell within the rolling rows.
+                final int k = (j - pC0) + 1;
+                // Is the cell outside of the window?
+                if(j < lRowStart || j > lRowEnd) {
+                    // The cell is unreachable.
+                    lCurrent[k]      = Double.POSITIVE_INFINITY;
+                    lCurrentLabel[k] = -1;
+                    continue;
+                }
+                // Are we at the origin?
+                if(i == 0 && j == 0) {
+                    // Initialize the Global.
+                    lCurrent[k]      = lCosts[0];
+                    lCurrentLabel[k] = -1;
+                    continue;
+                }
+                // Select the neighbour which backtracking would follow, in the order of the MinimaBuffer.
+                      double lNearest   = lPrevious[k];
+                      int    lDirection = HirschbergDTW.DIRECTION_UP;
+                if(lCurrent[k - 1] < lNearest) {
+                    lNearest   = lCurrent[k - 1];
+                    lDirection = HirschbergDTW.DIRECTION_LEFT;
+                }
+                if(lPrevious[k - 1] < lNearest) {
+                    lNearest   = lPrevious[k - 1];
+                    lDirection = HirschbergDTW.DIRECTION_DIAGONAL;
+                }
+                // Accumulate the path.
+                lCurrent[k] = lNearest + lCosts[j];
+                // Are we labelling this cell?
+                if(lLabelled) {
+                    // Is the cell beyond a split row?
+                    if(pSplitRow >= 0 && i > pSplitRow) {
+                        // Does backtracking cross the split from this cell? Otherwise, inherit the label of the neighbour.
+                        switch(lDirection) {
+                            case HirschbergDTW.DIRECTION_UP   : lCurrentLabel[k] = (i - 1 == pSplitRow) ? (j << 2) | lDirection : lPreviousLabel[k];     break;
+                            case HirschbergDTW.DIRECTION_LEFT : lCurrentLabel[k] = lCurrentLabel[k - 1];                                                 break;
+                            default                           : lCurrentLabel[k] = (i - 1 == pSplitRow) ? (j << 2) | lDirection : lPreviousLabel[k - 1]; break;
+                        }
+                    }
+                    // Is the cell beyond a split column?
+                    else if(pSplitColumn >= 0 && j > pSplitColumn) {
+                        // Does backtracking cross the split from this cell? Otherwise, inherit the label of the neighbour.
+                        switch(lDirection) {
+                            case HirschbergDTW.DIRECTION_UP   : lCurrentLabel[k] = lPreviousLabel[k];                                                    break;
+                            case HirschbergDTW.DIRECTION_LEFT : lCurrentLabel[k] = (j - 1 == pSplitColumn) ? (i << 2) | lDirection : lCurrentLabel[k - 1];  break;
+                            default                           : lCurrentLabel[k] = (j - 1 == pSplitColumn) ? (i << 2) | lDirection : lPreviousLabel[k - 1]; break;
+                        }
+                    }
+                    else {
+                        // The cell lies before the split.
+                        lCurrentLabel[k] = -1;
+                    }
+                }
+            }
+            // Capture the Row, if it's been asked for.
+            if(i == pRowIndex) {
+                System.arraycopy(lCurrent, 0, pRow, 0, lWidth + 1);
+            }
+            // Capture the Column, if it's been asked for.
+            if(pColumn != null) {
+                pColumn[i - pR0] = lCurrent[(pColumnIndex - pC0) + 1];
+            }
+            // Fetch the Label of the last cell.
+            lLabel = lCurrentLabel[lWidth];
+            // Swap the Rows.
+            final double[] lRow      = lPrevious;
+                           lPrevious = lCurrent;
+                           lCurrent  = lRow;
+            final int[]    lLabels        = lPreviousLabel;
+                           lPreviousLabel = lCurrentLabel;
+                           lCurrentLabel  = lLabels;
+        }
+        // Return the Label of the last cell.
+        return lLabel;
+    }
+
+    /** Accumulates a small rectangle in full, and prepends the path from its last cell back to its first. */
+    private void onBacktrack(final Problem pProblem, final int pR0, final int pR1, final int pC0, final int pC1, final double[] pTop, final int pTopOffset, final double[] pLeft, final int pLeftOffset) {
+        // Fetch the dimensions of the rectangle, including its edges.
+        final int      lHeight = (pR1 - pR0) + 2;
+        final int      lWidth  = (pC1 - pC0) + 2;
+        // Fetch the Global Distances. (Cell (i, j) lives at ((i - R0 + 1) * Width) + (j - C0 + 1).)
+        final double[] lG      = this.getDTW().getWorkspace().getDoubles(Workspace.SLOT_GLOBAL, lHeight * lWidth);
+        // Fetch the Local Distances of a row.
+        final double[] lCosts  = this.getDTW().getWorkspace().getDoubles(Workspace.SLOT_COSTS, pProblem.mTemplate.length / this.getDTW().getDimensions());
+        // Fetch the Metric and the Dimensions.
+        final Metric   lMetric     = this.getDTW().getMetric();
+        final int      lDimensions = this.getDTW().getDimensions();
+        // Initialize the top edge.
+        System.arraycopy(pTop, pTopOffset, lG, 0, lWidth);
+        // Iterate the rows of the rectangle.
+        for(int i = pR0; i <= pR1; i++) {
+            // Fetch where the row begins.
+            final int lRow      = (i - pR0 + 1) * lWidth;
+            // Fetch the bounds of this row, within the rectangle.
+            final int lRowStart = Math.max(pC0, pProblem.mStart[i]);
+            final int lRowEnd   = Math.min(pC1, pProblem.mEnd[i]);
+            // Initialize the left edge.
+            lG[lRow] = pLeft[pLeftOffset + (i - pR0)];
+            // Calculate the Local Distances along this row.
+            if(lRowStart <= lRowEnd) {
+                lMetric.getCosts(pProblem.mSample, i * lDimensions, pProblem.mTemplate, lRowStart, lRowEnd, lDimensions, lCosts);
+            }
+            // Iterate the columns of the rectangle.
+            for(int j = pC0; j <= pC1; j++) {
+                // Fetch the index of the cell.
+                final int k = lRow + (j - pC0) + 1;
+                // Is the cell outside of the window?
+                if(j < lRowStart || j > lRowEnd) {
+                    // The cell is unreachable.
+                    lG[k] = Double.POSITIVE_INFINITY;
+                }
+                // Are we at the origin?
+                else if(i == 0 && j == 0) {
+                    // Initialize the Global.
+                    lG[k] = lCosts[0];
+                }
+                else {
+                    // Accumulate the path, via the nearest neighbour.
+                    lG[k] = Math.min(lG[k - lWidth], Math.min(lG[k - 1], lG[k - lWidth - 1])) + lCosts[j];
+                }
+            }
+        }
+        // Is this the last cell of the matrix? (It's always traced first.)
+        if(pProblem.mStep == (pProblem.mPath.length >> 1)) {
+            // Track the accumulated cost of the Warping Path.
+            pProblem.mGlobal = lG[(lHeight * lWidth) - 1];
+        }
+        // Begin at the last cell.
+        int i = pR1;
+        int j = pC1;
+        // Write the first step.
+        pProblem.onStep(i, j);
+        // Whilst we haven't reached the first cell...
+        while(i != pR0 || j != pC0) {
+            // Fetch the index of the cell.
+            final int    k         = ((i - pR0 + 1) * lWidth) + (j - pC0) + 1;
+            // Select the neighbour which backtracking would follow, in the order of the MinimaBuffer.
+                  double lNearest  = lG[k - lWidth];
+                  int    lDirection = HirschbergDTW.DIRECTION_UP;
+            if(lG[k - 1] < lNearest) {
+                lNearest   = lG[k - 1];
+                lDirection = HirschbergDTW.DIRECTION_LEFT;
+            }
+            if(lG[k - lWidth - 1] < lNearest) {
+                lDirection = HirschbergDTW.DIRECTION_DIAGONAL;
+            }
+            // Update the iteration components.
+            i -= (lDirection != HirschbergDTW.DIRECTION_LEFT) ? 1 : 0;
+            j -= (lDirection != HirschbergDTW.DIRECTION_UP)   ? 1 : 0;
+            // Write the step.
+            pProblem.onStep(i, j);
+        }
+    }
+
+    /** Allocates an edge of unreachable cells. */
+    private static double[] getUnreachable(final int pLength) {
+        // Allocate the Edge.
+        final double[] lEdge = new double[pLength];
+        // Nothing can be reached from beyond the matrix.
+        Arrays.fill(lEdge, Double.POSITIVE_INFINITY);
+        // Return the Edge.
+        return lEdge;
+    }
+
+    /** Computes the number of frames in a series. */
+    private int getFrames(final float[] pSeries) {
+        // Ensure the series is made of whole frames.
+        if(pSeries.length % this.getDTW().getDimensions() != 0) {
+            // Assert that the series is invalid.
+            throw new IllegalArgumentException("A series of " + pSeries.length + " values can't be divided into frames of " + this.getDTW().getDimensions() + " dimensions.");
+        }
+        // Return the number of frames.
+        return pSeries.length / this.getDTW().getDimensions();
+    }
+
+    /* Getters. */
+    public final DTW getDTW() {
+        return this.mDTW;
+    }
+
+}
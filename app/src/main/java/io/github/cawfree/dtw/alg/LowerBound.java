@@ -0,0 +1,324 @@
+package io.github.cawfree.dtw.alg;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ *  Computes cheap lower bounds on the distance returned by {@link DTW#getDistance(float[], float[], Window)}, so that callers
+ *  can skip the quadratic computation for templates which can't beat their best-so-far.
+ *
+ *  Each bound sums squared errors which every warping path inside the Window is guaranteed to pay, so it never exceeds the
+ *  accumulated global distance. Since a warping path takes fewer than (N + M) steps, each bound is then normalized by
+ *  (N + M - 1), which keeps it beneath the normalized distance.
+ *
+ *  Envelopes are cached per template, and shared between all users of this LowerBound; by default only the envelope for
+ *  the latest sample length is kept, but a {@link TemplateCache} may be supplied to keep one for every length and bound
+ *  the memory they use. The remaining scratch buffers belong to the Workspace, so a LowerBound is only as thread-safe as
+ *  its Workspace.
+ **/
+public final class LowerBound {
+
+    /** The upper and lower envelopes of a template, for every index of a sample of a given length. */
+    public static final class Envelope {
+        /* Member Variables. */
+        private final int     mSampleLength;
+        private final float[] mUpper;
+        private final float[] mLower;
+        /** Constructor. */
+        Envelope(final int pSampleLength, final float[] pUpper, final float[] pLower) {
+            // Initialize Member Variables.
+            this.mSampleLength = pSampleLength;
+            this.mUpper        = pUpper;
+            this.mLower        = pLower;
+        }
+        /* Getters. */
+        public final int     getSampleLength() { return this.mSampleLength; }
+        public final float[]        getUpper() { return this.mUpper;        }
+        public final float[]        getLower() { return this.mLower;        }
+    }
+
+    /**
+     *  Computes the running maximum and minimum of a series over monotonic ranges, using a pair of monotonic deques.
+     *  Each index of the series enters and leaves the deque at most once, so this is O(N + M) regardless of the window size.
+     **/
+    static void getEnvelope(final float[] pSeries, final int pRows, final int[] pStart, final int[] pEnd, final float[] pUpper, final float[] pLower, final int[] pDeque) {
+        // Compute the Upper Envelope, then the Lower.
+        LowerBound.getExtrema(pSeries, pRows, pStart, pEnd, pUpper, pDeque, true);
+        LowerBound.getExtrema(pSeries, pRows, pStart, pEnd, pLower, pDeque, false);
+    }
+
+    /** Computes the running maximum or minimum of a series over monotonic ranges. */
+    private static void getExtrema(final float[] pSeries, final int pRows, final int[] pStart, final int[] pEnd, final float[] pExtrema, final int[] pDeque, final boolean pIsMaximum) {
+        // Declare the bounds of the Deque.
+        int lHead = 0;
+        int lTail = 0;
+        // Declare the next index of the series to enter the Deque.
+        int lNext = 0;
+        // Iterate the Rows.
+        for(int i = 0; i < pRows; i++) {
+            // Admit the series up until the end of this row.
+            for(; lNext <= pEnd[i]; lNext++) {
+                // Fetch the Value.
+                final float lValue = pSeries[lNext];
+                // Discard any values which this one dominates.
+                while(lTail > lHead && (pIsMaximum ? (pSeries[pDeque[lTail - 1]] <= lValue) : (pSeries[pDeque[lTail - 1]] >= lValue))) {
+                    lTail--;
+                }
+                // Buffer the Index.
+                pDeque[lTail++] = lNext;
+            }
+            // Discard any indices which have fallen out of the row.
+            while(pDeque[lHead] < pStart[i]) {
+                lHead++;
+            }
+            // The head of the Deque is the extremum of the row.
+            pExtrema[i] = pSeries[pDeque[lHead]];
+        }
+    }
+
+    /** Computes the squared distance between a value and the nearest point of an envelope. */
+    private static double getDistanceToEnvelope(final float pValue, final float pUpper, final float pLower) {
+        // Is the value above the envelope?
+        if(pValue > pUpper) {
+            // Calculate the square error.
+            return ((double)pValue - pUpper) * ((double)pValue - pUpper);
+        }
+        // Is the value beneath the envelope?
+        else if(pValue < pLower) {
+            // Calculate the square error.
+            return ((double)pLower - pValue) * ((double)pLower - pValue);
+        }
+        // The value lies within the envelope.
+        return 0.0;
+    }
+
+    /** Computes the squared distance between a sample and a template value. */
+    private static double getDistanceBetween(final float pSample, final float pTemplate) {
+        // Calculate the square error.
+        return ((double)pSample - pTemplate) * ((double)pSample - pTemplate);
+    }
+
+    /** Computes the smallest squared distance from the sample to any existing cell of the template, amongst three candidates. */
+    private static double getMinimum(final float[] pSample, final float[] pTemplate, final int pI0, final int pJ0, final int pI1, final int pJ1, final int pI2, final int pJ2) {
+        // Declare the Minimum.
+        double lMinimum = Double.POSITIVE_INFINITY;
+        // Iterate the candidates which lie inside of the cost matrix.
+        if(pI0 >= 0 && pI0 < pSample.length && pJ0 >= 0 && pJ0 < pTemplate.length) { lMinimum = Math.min(lMinimum, LowerBound.getDistanceBetween(pSample[pI0], pTemplate[pJ0])); }
+        if(pI1 >= 0 && pI1 < pSample.length && pJ1 >= 0 && pJ1 < pTemplate.length) { lMinimum = Math.min(lMinimum, LowerBound.getDistanceBetween(pSample[pI1], pTemplate[pJ1])); }
+        if(pI2 >= 0 && pI2 < pSample.length && pJ2 >= 0 && pJ2 < pTemplate.length) { lMinimum = Math.min(lMinimum, LowerBound.getDistanceBetween(pSample[pI2], pTemplate[pJ2])); }
+        // Return the Minimum.
+        return lMinimum;
+    }
+
+    /* Member Variables. */
+    private final Window                   mWindow;
+    private final Workspace                mWorkspace;
+    private final Map<float[], Envelope>   mEnvelopes;
+    private final TemplateCache            mTemplateCache;
+
+    /** Constructor. Bounds are only valid for distances computed with the same Window; a null Window is unconstrained. */
+    public LowerBound(final Window pWindow) {
+        // Allocate a Workspace for this instance.
+        this(pWindow, new Workspace());
+    }
+
+    /** Constructs a LowerBound which reuses the scratch buffers of the supplied Workspace. */
+    public LowerBound(final Window pWindow, final Workspace pWorkspace) {
+        // Cache envelopes alongside their templates.
+        this(pWindow, pWorkspace, null);
+    }
+
+    /** Constructs a LowerBound whose envelopes are held by a TemplateCache. A null TemplateCache keeps them alongside their templates. */
+    public LowerBound(final Window pWindow, final Workspace pWorkspace, final TemplateCache pTemplateCache) {
+        // Initialize Member Variables. (Templates are keyed by identity, and released along with them.)
+        this.mWindow        = pWindow;
+        this.mWorkspace     = pWorkspace;
+        this.mEnvelopes     = Collections.synchronizedMap(new WeakHashMap<float[], Envelope>());
+        this.mTemplateCache = pTemplateCache;
+    }
+
+    /** Constructs a LowerBound which shares the Window and the cached envelopes of another, but uses its own Workspace. */
+    public LowerBound(final LowerBound pLowerBound, final Workspace pWorkspace) {
+        // Initialize Member Variables.
+        this.mWindow        = pLowerBound.getWindow();
+        this.mWorkspace     = pWorkspace;
+        this.mEnvelopes     = pLowerBound.getEnvelopes();
+        this.mTemplateCache = pLowerBound.getTemplateCache();
+    }
+
+    /**
+     *  Computes LB_Kim. Every warping path begins at the first cell and ends at the last, and takes exactly one step away
+     *  from each of them; when the matrix is large enough for those four steps to be distinct, each contributes the cheapest
+     *  of its candidate cells. O(1).
+     **/
+    public double getKim(final float[] pSample, final float[] pTemplate) {
+        // Declare Iteration Constants.
+        final int lN = pSample.length;
+        final int lM = pTemplate.length;
+        // Ensure the samples are valid.
+        if(lN == 0 || lM == 0) {
+            // Assert a bad result.
+            return Double.NaN;
+        }
+        // Every path pays for the first cell.
+        double lBound = LowerBound.getDistanceBetween(pSample[0], pTemplate[0]);
+        // Is the last cell distinct from the first?
+        if(lN > 1 || lM > 1) {
+            // Every path pays for the last cell.
+            lBound += LowerBound.getDistanceBetween(pSample[lN - 1], pTemplate[lM - 1]);
+        }
+        // Are the second and penultimate steps guaranteed to be distinct from each other, and from the corners?
+        if(lN > 3 || lM > 3) {
+            // Accumulate the cheapest second step, and the cheapest penultimate step.
+            lBound += LowerBound.getMinimum(pSample, pTemplate, 1, 0, 0, 1, 1, 1);
+            lBound += LowerBound.getMinimum(pSample, pTemplate, lN - 2, lM - 1, lN - 1, lM - 2, lN - 2, lM - 2);
+        }
+        // Return the normalized Bound.
+        return lBound / ((lN + lM) - 1);
+    }
+
+    /** Computes LB_Keogh against the template's cached envelope. O(N), once the envelope has been cached. */
+    public double getKeogh(final float[] pSample, final float[] pTemplate) {
+        // Ensure the samples are valid.
+        if(pSample.length == 0 || pTemplate.length == 0) {
+            // Assert a bad result.
+            return Double.NaN;
+        }
+        // Compute the Bound against the Envelope.
+        return this.getKeogh(pSample, pTemplate.length, this.getEnvelope(pTemplate, pSample.length));
+    }
+
+    /**
+     *  Computes LB_Keogh against a precomputed envelope of an M-length template. Each row of the warping path must visit the
+     *  template somewhere inside the Window, and can pay no less than the distance from the sample to the envelope there.
+     **/
+    public double getKeogh(final float[] pSample, final int pM, final Envelope pEnvelope) {
+        // Return the normalized Bound.
+        return this.getKeoghSum(pSample, pEnvelope) / ((pSample.length + pM) - 1);
+    }
+
+    /** Accumulates the distance of a sample from an envelope. */
+    private double getKeoghSum(final float[] pSample, final Envelope pEnvelope) {
+        // Fetch the Envelope.
+        final float[] lUpper = pEnvelope.getUpper();
+        final float[] lLower = pEnvelope.getLower();
+        // Declare the Sum.
+              double  lSum   = 0.0;
+        // Iterate the Sample.
+        for(int i = 0; i < pSample.length; i++) {
+            // Accumulate the distance to the Envelope.
+            lSum += LowerBound.getDistanceToEnvelope(pSample[i], lUpper[i], lLower[i]);
+        }
+        // Return the Sum.
+        return lSum;
+    }
+
+    /** Computes LB_Improved against the template's cached envelope. O(N + M). */
+    public double getImproved(final float[] pSample, final float[] pTemplate) {
+        // Ensure the samples are valid.
+        if(pSample.length == 0 || pTemplate.length == 0) {
+            // Assert a bad result.
+            return Double.NaN;
+        }
+        // Compute the Bound against the Envelope.
+        return this.getImproved(pSample, pTemplate, this.getEnvelope(pTemplate, pSample.length));
+    }
+
+    /**
+     *  Computes LB_Improved. (Lemire, 2009) The sample is projected onto the template's envelope, and then LB_Keogh is
+     *  accumulated in the opposite direction, from the template to the envelope of the projection. Since each projected
+     *  value lies between the sample and any template value the path could pair it with, the squared error of every cell
+     *  is at least the sum of the two parts, so the result is never less than LB_Keogh and is still a lower bound.
+     **/
+    public double getImproved(final float[] pSample, final float[] pTemplate, final Envelope pEnvelope) {
+        // Declare Iteration Constants.
+        final int     lN          = pSample.length;
+        final int     lM          = pTemplate.length;
+        // Fetch the Envelope.
+        final float[] lUpper      = pEnvelope.getUpper();
+        final float[] lLower      = pEnvelope.getLower();
+        // Fetch the Projection, and its Envelope.
+        final float[] lProjection = this.getWorkspace().getFloats(Workspace.SLOT_PROJECTION, lN);
+        final float[] lProjUpper  = this.getWorkspace().getFloats(Workspace.SLOT_UPPER, lM);
+        final float[] lProjLower  = this.getWorkspace().getFloats(Workspace.SLOT_LOWER, lM);
+        // Declare the Sum.
+              double  lSum        = 0.0;
+        // Iterate the Sample.
+        for(int i = 0; i < lN; i++) {
+            // Fetch the Value.
+            final float lValue = pSample[i];
+            // Accumulate the distance to the Envelope.
+            lSum          += LowerBound.getDistanceToEnvelope(lValue, lUpper[i], lLower[i]);
+            // Project the Value onto the Envelope.
+            lProjection[i] = Math.max(lLower[i], Math.min(lUpper[i], lValue));
+        }
+        // Fetch the bounds of the Window, for each row of the Sample and each column of the Template.
+        final int[] lStart       = this.getWorkspace().getInts(Workspace.SLOT_START,        lN);
+        final int[] lEnd         = this.getWorkspace().getInts(Workspace.SLOT_END,          lN);
+        final int[] lColumnStart = this.getWorkspace().getInts(Workspace.SLOT_COLUMN_START, lM);
+        final int[] lColumnEnd   = this.getWorkspace().getInts(Workspace.SLOT_COLUMN_END,   lM);
+        // Compute the bounds of the Window, as seen by the Template.
+        Window.getRanges(this.getWindow(), lN, lM, lStart, lEnd);
+        Window.transpose(lN, lM, lStart, lEnd, lColumnStart, lColumnEnd);
+        // Compute the Envelope of the Projection.
+        LowerBound.getEnvelope(lProjection, lM, lColumnStart, lColumnEnd, lProjUpper, lProjLower, this.getWorkspace().getInts(Workspace.SLOT_DEQUE, lN));
+        // Iterate the Template.
+        for(int j = 0; j < lM; j++) {
+            // Accumulate the distance from the Template to the Envelope of the Projection.
+            lSum += LowerBound.getDistanceToEnvelope(pTemplate[j], lProjUpper[j], lProjLower[j]);
+        }
+        // Return the normalized Bound.
+        return lSum / ((lN + lM) - 1);
+    }
+
+    /** Returns the envelope of a template for samples of the given length, computing and caching it if necessary. */
+    public Envelope getEnvelope(final float[] pTemplate, final int pSampleLength) {
+        // Are envelopes held by a TemplateCache?
+        if(this.getTemplateCache() != null) {
+            // Delegate to the TemplateCache.
+            return this.getTemplateCache().getEnvelope(pTemplate, this.getWindow(), pSampleLength);
+        }
+        // Fetch the cached Envelope.
+        final Envelope lCached = this.getEnvelopes().get(pTemplate);
+        // Does the cached Envelope apply to samples of this length?
+        if(lCached != null && lCached.getSampleLength() == pSampleLength) {
+            // Reuse the Envelope.
+            return lCached;
+        }
+        // Declare Iteration Constants.
+        final int      lN        = pSampleLength;
+        final int      lM        = pTemplate.length;
+        // Allocate the Envelope.
+        final Envelope lEnvelope = new Envelope(lN, new float[lN], new float[lN]);
+        // Fetch the bounds of the Window.
+        final int[]    lStart    = this.getWorkspace().getInts(Workspace.SLOT_START, lN);
+        final int[]    lEnd      = this.getWorkspace().getInts(Workspace.SLOT_END,   lN);
+        // Compute the bounds of the Window.
+        Window.getRanges(this.getWindow(), lN, lM, lStart, lEnd);
+        // Compute the Envelope.
+        LowerBound.getEnvelope(pTemplate, lN, lStart, lEnd, lEnvelope.getUpper(), lEnvelope.getLower(), this.getWorkspace().getInts(Workspace.SLOT_DEQUE, lM));
+        // Cache the Envelope.
+        this.getEnvelopes().put(pTemplate, lEnvelope);
+        // Return the Envelope.
+        return lEnvelope;
+    }
+
+    /* Getters. */
+    public final Window getWindow() {
+        return this.mWindow;
+    }
+
+    private final Workspace getWorkspace() {
+        return this.mWorkspace;
+    }
+
+    private final Map<float[], Envelope> getEnvelopes() {
+        return this.mEnvelopes;
+    }
+
+    public final TemplateCache getTemplateCache() {
+        return this.mTemplateCache;
+    }
+
+}
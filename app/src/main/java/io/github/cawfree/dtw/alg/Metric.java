@@ -0,0 +1,211 @@
+package io.github.cawfree.dtw.alg;
+
+/**
+ *  Defines the cost of aligning a single value of the sample with a single value of the template. The cost of aligning
+ *  two frames is the sum of the costs of their components. Costs must be non-negative and symmetric, since a DTW may
+ *  iterate along whichever series is longer.
+ *
+ *  Custom metrics only need to implement {@link #getCost(float, float)}. The built-in metrics also override the loop
+ *  which fills a whole row of costs, (and the squared error, the anti-diagonal), so their arithmetic is inlined and each
+ *  DTW pays for one virtual call per row, rather than one per cell.
+ **/
+public abstract class Metric {
+
+    /** The squared error; (a - b)^2. This is the default, and the only metric which the lower bounds are valid for. */
+    public static final Metric SQUARED  = new Metric() {
+        /** Computes the cost between two values. */
+        @Override public final double getCost(final float pA, final float pB) {
+            // Calculate the square error.
+            final double lError = (double)pA - pB;
+            // Return the Cost.
+            return lError * lError;
+        }
+        /** Fills a row of costs, using a loop specialised for the squared error. */
+        @Override final void getCosts(final float[] pA, final int pOffset, final float[] pB, final int pStart, final int pEnd, final int pDimensions, final double[] pCosts) {
+            // Is the series univariate?
+            if(pDimensions == 1) {
+                // Fetch the Value.
+                final double lA = pA[pOffset];
+                // Iterate the Row.
+                for(int j = pStart; j <= pEnd; j++) {
+                    // Calculate the square error.
+                    final double lError = lA - pB[j];
+                    // Update the Cost.
+                    pCosts[j] = lError * lError;
+                }
+                return;
+            }
+            // Iterate the Row.
+            for(int j = pStart; j <= pEnd; j++) {
+                // Fetch the offset of the frame.
+                final int lB    = j * pDimensions;
+                // Declare the Cost.
+                      double lCost = 0.0;
+                // Iterate the Dimensions.
+                for(int d = 0; d < pDimensions; d++) {
+                    // Calculate the square error.
+                    final double lError = (double)pA[pOffset + d] - pB[lB + d];
+                    // Accumulate the Cost.
+                    lCost += lError * lError;
+                }
+                // Update the Cost.
+                pCosts[j] = lCost;
+            }
+        }
+        /** Fills an anti-diagonal of costs, using a loop specialised for the squared error. */
+        @Override final void getDiagonalCosts(final float[] pA, final float[] pB, final int pDiagonal, final int pFirst, final int pLast, final int pDimensions, final double[] pCosts) {
+            // Is the series univariate?
+            if(pDimensions == 1) {
+                // Iterate the Anti-Diagonal.
+                for(int i = pFirst; i <= pLast; i++) {
+                    // Calculate the square error.
+                    final double lError = (double)pA[i] - pB[pDiagonal - i];
+                    // Update the Cost.
+                    pCosts[i] = lError * lError;
+                }
+                return;
+            }
+            // Iterate the Anti-Diagonal.
+            for(int i = pFirst; i <= pLast; i++) {
+                // Fetch the offsets of the frames.
+                final int lA    = i * pDimensions;
+                final int lB    = (pDiagonal - i) * pDimensions;
+                // Declare the Cost.
+                      double lCost = 0.0;
+                // Iterate the Dimensions.
+                for(int d = 0; d < pDimensions; d++) {
+                    // Calculate the square error.
+                    final double lError = (double)pA[lA + d] - pB[lB + d];
+                    // Accumulate the Cost.
+                    lCost += lError * lError;
+                }
+                // Update the Cost.
+                pCosts[i] = lCost;
+            }
+        }
+    };
+
+    /** The absolute error; |a - b|. This is less sensitive to outliers than the squared error. */
+    public static final Metric ABSOLUTE = new Metric() {
+        /** Computes the cost between two values. */
+        @Override public final double getCost(final float pA, final float pB) {
+            // Calculate the absolute error.
+            return Math.abs((double)pA - pB);
+        }
+        /** Fills a row of costs, using a loop specialised for the absolute error. */
+        @Override final void getCosts(final float[] pA, final int pOffset, final float[] pB, final int pStart, final int pEnd, final int pDimensions, final double[] pCosts) {
+            // Is the series univariate?
+            if(pDimensions == 1) {
+                // Fetch the Value.
+                final double lA = pA[pOffset];
+                // Iterate the Row.
+                for(int j = pStart; j <= pEnd; j++) {
+                    // Update the Cost.
+                    pCosts[j] = Math.abs(lA - pB[j]);
+                }
+                return;
+            }
+            // Iterate the Row.
+            for(int j = pStart; j <= pEnd; j++) {
+                // Fetch the offset of the frame.
+                final int lB    = j * pDimensions;
+                // Declare the Cost.
+                      double lCost = 0.0;
+                // Iterate the Dimensions.
+                for(int d = 0; d < pDimensions; d++) {
+                    // Accumulate the absolute error.
+                    lCost += Math.abs((double)pA[pOffset + d] - pB[lB + d]);
+                }
+                // Update the Cost.
+                pCosts[j] = lCost;
+            }
+        }
+    };
+
+    /** The Huber loss; quadratic for errors up to delta, and linear beyond it, so that spikes don't dominate the alignment. */
+    public static Metric huber(final double pDelta) {
+        // Ensure the delta is valid.
+        if(!(pDelta > 0.0)) {
+            // Assert that the delta is invalid.
+            throw new IllegalArgumentException("The Huber loss needs a positive delta, not " + pDelta + ".");
+        }
+        // Return the Metric.
+        return new Metric() {
+            /** Computes the cost between two values. */
+            @Override public final double getCost(final float pA, final float pB) {
+                // Calculate the Huber loss.
+                return Metric.getHuber(Math.abs((double)pA - pB), pDelta);
+            }
+            /** Fills a row of costs, using a loop specialised for the Huber loss. */
+            @Override final void getCosts(final float[] pA, final int pOffset, final float[] pB, final int pStart, final int pEnd, final int pDimensions, final double[] pCosts) {
+                // Iterate the Row.
+                for(int j = pStart; j <= pEnd; j++) {
+                    // Fetch the offset of the frame.
+                    final int lB    = j * pDimensions;
+                    // Declare the Cost.
+                          double lCost = 0.0;
+                    // Iterate the Dimensions.
+                    for(int d = 0; d < pDimensions; d++) {
+                        // Accumulate the Huber loss.
+                        lCost += Metric.getHuber(Math.abs((double)pA[pOffset + d] - pB[lB + d]), pDelta);
+                    }
+                    // Update the Cost.
+                    pCosts[j] = lCost;
+                }
+            }
+        };
+    }
+
+    /** Computes the Huber loss of an absolute error. */
+    private static double getHuber(final double pError, final double pDelta) {
+        // Is the error within the quadratic region?
+        return (pError <= pDelta) ? (0.5 * pError * pError) : (pDelta * (pError - (0.5 * pDelta)));
+    }
+
+    /** Computes the cost of aligning a value of the sample with a value of the template. */
+    public abstract double getCost(final float pA, final float pB);
+
+    /**
+     *  Fills the costs between the frame of A which begins at the given offset, and the frames start to end (inclusive) of
+     *  B. The cost of frame j is written to index j of the costs.
+     **/
+    void getCosts(final float[] pA, final int pOffset, final float[] pB, final int pStart, final int pEnd, final int pDimensions, final double[] pCosts) {
+        // Iterate the Row.
+        for(int j = pStart; j <= pEnd; j++) {
+            // Fetch the offset of the frame.
+            final int lB    = j * pDimensions;
+            // Declare the Cost.
+                  double lCost = 0.0;
+            // Iterate the Dimensions.
+            for(int d = 0; d < pDimensions; d++) {
+                // Accumulate the Cost.
+                lCost += this.getCost(pA[pOffset + d], pB[lB + d]);
+            }
+            // Update the Cost.
+            pCosts[j] = lCost;
+        }
+    }
+
+    /**
+     *  Fills the costs along an anti-diagonal, between frames i of A and (diagonal - i) of B, for i from first to last
+     *  (inclusive). The cost of frame i is written to index i of the costs.
+     **/
+    void getDiagonalCosts(final float[] pA, final float[] pB, final int pDiagonal, final int pFirst, final int pLast, final int pDimensions, final double[] pCosts) {
+        // Iterate the Anti-Diagonal.
+        for(int i = pFirst; i <= pLast; i++) {
+            // Fetch the offsets of the frames.
+            final int lA    = i * pDimensions;
+            final int lB    = (pDiagonal - i) * pDimensions;
+            // Declare the Cost.
+                  double lCost = 0.0;
+            // Iterate the Dimensions.
+            for(int d = 0; d < pDimensions; d++) {
+                // Accumulate the Cost.
+                lCost += this.getCost(pA[lA + d], pB[lB + d]);
+            }
+            // Update the Cost.
+            pCosts[i] = lCost;
+        }
+    }
+
+}
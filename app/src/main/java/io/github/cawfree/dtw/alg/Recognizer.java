@@ -0,0 +1,438 @@
+package io.github.cawfree.dtw.alg;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *  Scores samples against a set of templates in the background, and reports the distances through a callback.
+ *
+ *  Requests are run one at a time by a dedicated thread, which holds at most one request in waiting. Only the most recent
+ *  request is wanted; submitting a new one cancels the last, whether it's still waiting or already running. Within a
+ *  request, templates are claimed by a fixed pool of workers, each with its own DTW. Cancellation is cooperative; workers
+ *  stop claiming templates, and are interrupted so that a distance which is in progress is abandoned at the end of its
+ *  current row, (see {@link DTW#setInterruptible(boolean)}). A cancelled request never calls back.
+ *
+ *  A sample can also be recognized whilst it's still being recorded, through a {@link Stream}. Each frame is warped onto
+ *  every template by a {@link DTW.Session} on a separate stream thread, so the caller only pays for a copy, and once the
+ *  sample has ended only the final cells are left to read.
+ *
+ *  Call {@link #close()} to release the threads.
+ **/
+public final class Recognizer {
+
+    /** Receives the distances computed for a Request. */
+    public interface Callback {
+        /** Called on a background thread with the distance to each template, in the order they were added. */
+        void onRecognized(final Recognizer.Request pRequest, final double[] pDistances);
+    }
+
+    /** Defines a sample which has been submitted for recognition. */
+    public final class Request implements Callable<Void> {
+        /* Member Variables. */
+        private final    float[]              mSample;
+        private final    List<float[]>        mTemplates;
+        private final    Callback             mCallback;
+        private final    double[]             mDistances;
+        private final    AtomicInteger        mCursor;
+        private final    List<Callable<Void>> mTasks;
+        private volatile boolean              mCancelled;
+        private volatile Future<Void>         mFuture;
+        /** Constructor. */
+        private Request(final float[] pSample, final List<float[]> pTemplates, final Callback pCallback) {
+            // Initialize Member Variables.
+            this.mSample    = pSample;
+            this.mTemplates = pTemplates;
+            this.mCallback  = pCallback;
+            this.mDistances = new double[pTemplates.size()];
+            this.mCursor    = new AtomicInteger();
+            this.mTasks     = new ArrayList<>(Recognizer.this.getWorkers().size());
+            this.mCancelled = false;
+            this.mFuture    = null;
+            // Iterate the Workers.
+            for(final Worker lWorker : Recognizer.this.getWorkers()) {
+                // Bind the Worker to this Request. (A Worker which starts late can never pick up another Request.)
+                this.mTasks.add(new Callable<Void>() { @Override public final Void call() {
+                    // Score the Templates.
+                    lWorker.score(Request.this);
+                    // Satisfy the compiler.
+                    return null;
+                } });
+            }
+        }
+        /** Scores the Templates across the Workers, then calls back. (Runs on the request thread.) */
+        @Override public final Void call() {
+            // Has the Request been superseded whilst it was waiting?
+            if(this.isCancelled()) {
+                // Don't do any work.
+                return null;
+            }
+            try {
+                // Score the Templates.
+                final List<Future<Void>> lFutures = Recognizer.this.getExecutorService().invokeAll(this.mTasks);
+                // Iterate the Futures.
+                for(final Future<Void> lFuture : lFutures) {
+                    try {
+                        // Propagate any failures.
+                        lFuture.get();
+                    }
+                    catch(final ExecutionException pExecutionException) {
+                        // Rethrow the cause.
+                        throw new IllegalStateException("Failed to score a template.", pExecutionException.getCause());
+                    }
+                }
+            }
+            catch(final InterruptedException pInterruptedException) {
+                // The Request was cancelled whilst it was running. (The Workers have been interrupted too.)
+                return null;
+            }
+            // Has the Request been cancelled in the meantime?
+            if(!this.isCancelled()) {
+                // Deliver the Distances.
+                this.mCallback.onRecognized(this, this.mDistances);
+            }
+            // Satisfy the compiler.
+            return null;
+        }
+        /** Cancels the Request. If it's running, the Workers abandon their distances as soon as they can. */
+        public final void cancel() {
+            // Assert that the Request is cancelled.
+            this.mCancelled = true;
+            // Fetch the Future. (This may not have been assigned yet; if so, the Request will see the flag before it starts.)
+            final Future<Void> lFuture = this.mFuture;
+            // Interrupt the request thread, if it's running the Request.
+            if(lFuture != null) {
+                lFuture.cancel(true);
+            }
+        }
+        /* Getters. */
+        public final float[]   getSample() { return this.mSample;    }
+        public final boolean isCancelled() { return this.mCancelled; }
+    }
+
+    /**
+     *  Incrementally warps a sample onto a snapshot of the templates whilst it's being recorded. Frames are appended by a
+     *  single thread, and queued for the stream thread, which extends a Session per template. If the stream thread ever
+     *  falls so far behind that a frame is dropped, the Sessions are abandoned and the sample is scored from scratch once
+     *  it's finished, so the distances are always exact.
+     **/
+    public final class Stream {
+        /* Member Variables. */
+        private final    List<float[]>       mTemplates;
+        private final    List<DTW.Session>   mSessions;
+        private final    FrameQueue          mQueue;
+        private final    AtomicBoolean       mScheduled;
+        private final    Runnable            mDrain;
+        private final    FrameQueue.Consumer mConsumer;
+        private volatile boolean             mCancelled;
+        /** Constructor. */
+        private Stream(final List<float[]> pTemplates) {
+            // Allocate a DTW to open the Sessions. (Sessions allocate their own rows, so they don't share a Workspace.)
+            final DTW lDTW = new DTW(Recognizer.this.getDimensions());
+            // Initialize Member Variables.
+            this.mTemplates = pTemplates;
+            this.mSessions  = new ArrayList<>(pTemplates.size());
+            this.mQueue     = new FrameQueue(Recognizer.this.getDimensions(), Recognizer.LENGTH_STREAM_QUEUE);
+            this.mScheduled = new AtomicBoolean(false);
+            this.mCancelled = false;
+            // Open a Session per Template.
+            for(final float[] lTemplate : pTemplates) {
+                // Buffer the Session.
+                this.mSessions.add(lDTW.getSession(lTemplate));
+            }
+            // Define how frames are consumed on the stream thread.
+            this.mConsumer  = new FrameQueue.Consumer() { @Override public final void onFrame(final float[] pValues, final int pOffset) {
+                // Extend every Session by the Frame.
+                for(final DTW.Session lSession : Stream.this.mSessions) {
+                    // Extend the alignment.
+                    lSession.append(pValues, pOffset);
+                }
+            } };
+            // Define how the queue is drained on the stream thread.
+            this.mDrain     = new Runnable() { @Override public final void run() {
+                // Allow another drain to be scheduled. (Do this first, so that no frames are left stranded.)
+                Stream.this.mScheduled.set(false);
+                // Is the Stream still wanted, and are the Sessions still exact?
+                if(!Stream.this.isCancelled() && Stream.this.mQueue.getDropped() == 0) {
+                    // Extend the Sessions by the waiting frames.
+                    Stream.this.mQueue.drain(Stream.this.mConsumer);
+                }
+            } };
+        }
+        /** Appends the frame which begins at the given offset of the array. Returns false if it was dropped, because the stream thread has fallen behind. */
+        public final boolean append(final float[] pFrame, final int pOffset) {
+            // Queue the Frame for the stream thread.
+            final boolean lQueued = this.mQueue.offer(pFrame, pOffset);
+            // Is a drain already on its way?
+            if(this.mScheduled.compareAndSet(false, true)) {
+                // Drain the queue on the stream thread.
+                Recognizer.this.getStreamService().execute(this.mDrain);
+            }
+            // Return whether the Frame was queued.
+            return lQueued;
+        }
+        /**
+         *  Ends a sample which was appended without loss, (see {@link #isLossy()}), and delivers its distance to each
+         *  template through the Callback once the stream thread has caught up. No copy of the sample is needed, since only
+         *  the final cells of the Sessions are read, and the Request holds no sample.
+         **/
+        public final Request finish(final Callback pCallback) {
+            // Ensure the Sessions are exact.
+            if(this.isLossy()) {
+                // Assert that the sample is needed.
+                throw new IllegalStateException("A Stream which dropped frames must be finished with its sample, so that it can be scored from scratch.");
+            }
+            // Finish the Stream.
+            return this.finish(null, pCallback);
+        }
+        /**
+         *  Ends the sample, and delivers its distance to each template through the Callback, once the stream thread has
+         *  caught up. This supersedes any earlier request, and returns a Request which is cancelled like any other. The
+         *  sample must hold the frames which were appended; it's only scored if the stream had to drop a frame.
+         **/
+        public final Request finish(final float[] pSample, final Callback pCallback) {
+            // Declare the Request.
+            final Request lRequest;
+            // Synchronize with submissions.
+            synchronized(Recognizer.this) {
+                // Supersede the last Request.
+                Recognizer.this.cancel();
+                // Allocate the Request, against the templates the Sessions were opened with.
+                lRequest = new Request(pSample, this.mTemplates, pCallback);
+                // Track the Request.
+                Recognizer.this.mLatest = lRequest;
+            }
+            // Read the Sessions once every frame has been appended. (The stream thread runs its tasks in order.)
+            Recognizer.this.getStreamService().execute(new Runnable() { @Override public final void run() {
+                // Finish the Request.
+                Stream.this.onFinish(lRequest);
+            } });
+            // Return the Request.
+            return lRequest;
+        }
+        /** Reads the distance of every Session into the Request, and calls back. (Runs on the stream thread.) */
+        private void onFinish(final Request pRequest) {
+            // Has the Request already been superseded?
+            if(pRequest.isCancelled()) {
+                // Don't do any work.
+                return;
+            }
+            // Did the stream have to drop a frame?
+            if(this.mQueue.getDropped() > 0) {
+                // Synchronize with submissions. (A newer Request mustn't be displaced from the queue by this one.)
+                synchronized(Recognizer.this) {
+                    // Is the Request still wanted?
+                    if(!pRequest.isCancelled()) {
+                        // Score the sample from scratch, on the request thread.
+                        pRequest.mFuture = Recognizer.this.getRequestService().submit(pRequest);
+                    }
+                }
+                // The Request will call back.
+                return;
+            }
+            // Extend the Sessions by the remaining frames.
+            this.mQueue.drain(this.mConsumer);
+            // Read the Distances. (Each is the final cell of its Session.)
+            for(int i = 0; i < this.mSessions.size(); i++) {
+                // Fetch the Distance.
+                pRequest.mDistances[i] = this.mSessions.get(i).getDistance();
+            }
+            // Has the Request been cancelled in the meantime?
+            if(!pRequest.isCancelled()) {
+                // Deliver the Distances.
+                pRequest.mCallback.onRecognized(pRequest, pRequest.mDistances);
+            }
+        }
+        /** Abandons the Stream. Frames which are still waiting are never appended. */
+        public final void cancel() {
+            // Assert that the Stream is cancelled.
+            this.mCancelled = true;
+        }
+        /* Getters. */
+        public final boolean isCancelled() { return this.mCancelled;              }
+        /** Whether a frame has been dropped, so that the sample will be scored from scratch. */
+        public final boolean     isLossy() { return this.mQueue.getDropped() > 0; }
+    }
+
+    /** Scores the templates claimed by a single worker. */
+    private final class Worker {
+        /* Member Variables. */
+        private final DTW mDTW;
+        /** Constructor. */
+        private Worker(final int pDimensions) {
+            // Allocate a DTW, with its own Workspace.
+            this.mDTW = new DTW(pDimensions);
+            // Abandon distances when we're interrupted.
+            this.mDTW.setInterruptible(true);
+        }
+        /**
+         *  Claims templates of a Request until there are none left to score, or the Request is cancelled. This is synchronized,
+         *  since a Worker of a cancelled Request may still be leaving the DTW when the next Request arrives.
+         **/
+        private synchronized void score(final Request pRequest) {
+            // Declare the index of the claimed Template.
+            int i;
+            // Whilst the Request is wanted, and there are templates to claim...
+            while(!pRequest.isCancelled() && (i = pRequest.mCursor.getAndIncrement()) < pRequest.mTemplates.size()) {
+                // Compute the Distance. (This is abandoned if we're interrupted.)
+                pRequest.mDistances[i] = this.mDTW.getDistance(pRequest.getSample(), pRequest.mTemplates.get(i), Recognizer.this.getWindow());
+            }
+        }
+    }
+
+    /** The most frames which may wait for the stream thread before they're dropped. */
+    private static final int LENGTH_STREAM_QUEUE = 1024;
+
+    /* Member Variables. */
+    private final int             mDimensions;
+    private final Window          mWindow;
+    private final List<float[]>   mTemplates;
+    private final ExecutorService mRequestService;
+    private final ExecutorService mExecutorService;
+    private final ExecutorService mStreamService;
+    private final List<Worker>    mWorkers;
+    private       Request         mLatest;
+
+    /** Constructor. Uses one worker per available core. */
+    public Recognizer(final int pDimensions, final Window pWindow) {
+        // Use every core.
+        this(pDimensions, pWindow, Runtime.getRuntime().availableProcessors());
+    }
+
+    /** Constructor. Distances are computed inside the Window; a null Window is unconstrained. */
+    public Recognizer(final int pDimensions, final Window pWindow, final int pParallelism) {
+        // Ensure the parallelism is valid.
+        if(pParallelism < 1) {
+            // Assert that the parallelism is invalid.
+            throw new IllegalArgumentException("A Recognizer needs at least one worker, not " + pParallelism + ".");
+        }
+        // Initialize Member Variables.
+        this.mDimensions      = pDimensions;
+        this.mWindow          = pWindow;
+        this.mTemplates       = new ArrayList<>();
+        this.mRequestService  = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(1), new ThreadPoolExecutor.DiscardOldestPolicy());
+        this.mExecutorService = Executors.newFixedThreadPool(pParallelism);
+        this.mStreamService   = Executors.newSingleThreadExecutor();
+        this.mWorkers         = new ArrayList<>(pParallelism);
+        this.mLatest          = null;
+        // Allocate the Workers.
+        for(int i = 0; i < pParallelism; i++) {
+            // Buffer a Worker.
+            this.mWorkers.add(new Worker(pDimensions));
+        }
+    }
+
+    /** Adds a template. The template is referenced rather than copied, so it mustn't be modified. */
+    public final synchronized void add(final float[] pTemplate) {
+        // Ensure the template is valid.
+        if(pTemplate.length == 0 || pTemplate.length % this.getDimensions() != 0) {
+            // Assert that the template is invalid.
+            throw new IllegalArgumentException("Can't recognize against a template of " + pTemplate.length + " values, in frames of " + this.getDimensions() + " dimensions.");
+        }
+        // Buffer the Template.
+        this.getTemplates().add(pTemplate);
+    }
+
+    /** Removes every template. Requests which have already been submitted keep the templates they were given. */
+    public final synchronized void clear() {
+        // Clear the Templates.
+        this.getTemplates().clear();
+    }
+
+    /**
+     *  Submits a sample to be scored against the current templates, superseding any earlier request. The sample is
+     *  referenced rather than copied, so it mustn't be modified until the Callback has been called.
+     **/
+    public final synchronized Request submit(final float[] pSample, final Callback pCallback) {
+        // Ensure the sample is valid.
+        if(pSample.length == 0 || pSample.length % this.getDimensions() != 0) {
+            // Assert that the sample is invalid.
+            throw new IllegalArgumentException("Can't recognize a sample of " + pSample.length + " values, in frames of " + this.getDimensions() + " dimensions.");
+        }
+        // Supersede the last Request.
+        this.cancel();
+        // Allocate the Request. (It takes a snapshot of the Templates, so they can change whilst it's waiting.)
+        final Request lRequest = new Request(pSample, new ArrayList<>(this.getTemplates()), pCallback);
+        // Track the Request.
+        this.mLatest = lRequest;
+        // Enqueue the Request. (If one is still waiting, it's discarded; it has already been cancelled.)
+        lRequest.mFuture = this.getRequestService().submit(lRequest);
+        // Return the Request.
+        return lRequest;
+    }
+
+    /** Opens a Stream against the current templates. Sessions are unconstrained, so the Recognizer mustn't have a Window. */
+    public final synchronized Stream open() {
+        // Ensure the Recognizer is unconstrained.
+        if(this.getWindow() != null) {
+            // Assert that a Stream can't honour the Window.
+            throw new IllegalStateException("A Stream can't recognize inside a Window.");
+        }
+        // Allocate the Stream. (It takes a snapshot of the Templates, so they can change whilst it's open.)
+        return new Stream(new ArrayList<>(this.getTemplates()));
+    }
+
+    /** Cancels the most recent request, if there is one. */
+    public final synchronized void cancel() {
+        // Is there a Request?
+        if(this.mLatest != null) {
+            // Cancel the Request.
+            this.mLatest.cancel();
+            // Forget the Request.
+            this.mLatest = null;
+        }
+    }
+
+    /** Cancels any outstanding request and releases the threads. */
+    public final void close() {
+        // Cancel the latest Request.
+        this.cancel();
+        // Shutdown the ExecutorServices.
+        this.getRequestService().shutdownNow();
+        this.getExecutorService().shutdownNow();
+        this.getStreamService().shutdownNow();
+    }
+
+    /* Getters. */
+    public final int getDimensions() {
+        return this.mDimensions;
+    }
+
+    public final Window getWindow() {
+        return this.mWindow;
+    }
+
+    public final synchronized int size() {
+        return this.getTemplates().size();
+    }
+
+    private final List<float[]> getTemplates() {
+        return this.mTemplates;
+    }
+
+    private final ExecutorService getRequestService() {
+        return this.mRequestService;
+    }
+
+    private final ExecutorService getExecutorService() {
+        return this.mExecutorService;
+    }
+
+    private final ExecutorService getStreamService() {
+        return this.mStreamService;
+    }
+
+    private final List<Worker> getWorkers() {
+        return this.mWorkers;
+    }
+
+}
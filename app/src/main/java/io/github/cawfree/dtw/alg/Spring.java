@@ -0,0 +1,177 @@
+package io.github.cawfree.dtw.alg;
+
+import java.util.Arrays;
+
+/**
+ *  Spots subsequences of an unbounded stream which warp onto a template, one sample at a time. (SPRING; Sakurai et al, 2007)
+ *
+ *  Only a single column of the cost matrix is kept against the template, alongside the stream index at which the
+ *  warping path to each cell began, so each sample costs O(M) time and the matcher holds O(M) state regardless of how
+ *  long the stream runs. Any subsequence may begin at any sample, so the threshold applies to the accumulated squared
+ *  error of the match, rather than to a normalized distance. Overlapping candidates are reported once, as the best of
+ *  the group, as soon as no later sample could improve upon it.
+ **/
+public final class Spring {
+
+    /** Receives the subsequences of the stream which match the template. */
+    public interface Listener {
+        /** Called when the samples from start to end, (inclusive), matched the template with the given accumulated distance. */
+        void onMatch(final Spring pSpring, final long pStart, final long pEnd, final double pDistance);
+    }
+
+    /* Member Variables. */
+    private final float[]  mTemplate;
+    private final int      mDimensions;
+    private final double   mThreshold;
+    private final Listener mListener;
+    private       double[] mDistance;
+    private       double[] mNextDistance;
+    private       long[]   mStart;
+    private       long[]   mNextStart;
+    private       long     mTime;
+    private       double   mBestDistance;
+    private       long     mBestStart;
+    private       long     mBestEnd;
+
+    /** Constructor. Matches a univariate template. */
+    public Spring(final float[] pTemplate, final double pThreshold, final Listener pListener) {
+        // Operate on univariate series.
+        this(pTemplate, 1, pThreshold, pListener);
+    }
+
+    /** Constructor. Matches a template of interleaved frames, each with the given number of dimensions. */
+    public Spring(final float[] pTemplate, final int pDimensions, final double pThreshold, final Listener pListener) {
+        // Ensure the template is valid.
+        if(pDimensions < 1 || pTemplate.length == 0 || pTemplate.length % pDimensions != 0) {
+            // Assert that the template is invalid.
+            throw new IllegalArgumentException("Expected a non-empty template of whole " + pDimensions + "-dimensional frames.");
+        }
+        // Fetch the number of Frames.
+        final int lM = pTemplate.length / pDimensions;
+        // Initialize Member Variables. (Column zero is the star-padding which lets a match begin at any sample.)
+        this.mTemplate     = pTemplate;
+        this.mDimensions   = pDimensions;
+        this.mThreshold    = pThreshold;
+        this.mListener     = pListener;
+        this.mDistance     = new double[lM + 1];
+        this.mNextDistance = new double[lM + 1];
+        this.mStart        = new long[lM + 1];
+        this.mNextStart    = new long[lM + 1];
+        // Reset the matcher.
+        this.reset();
+    }
+
+    /** Forgets the stream, as if no samples had been received. */
+    public final void reset() {
+        // Nothing has been aligned yet.
+        Arrays.fill(this.mDistance, Double.POSITIVE_INFINITY);
+        // Reset the stream.
+        this.mTime         = 0;
+        this.mBestDistance = Double.POSITIVE_INFINITY;
+        this.mBestStart    = -1;
+        this.mBestEnd      = -1;
+    }
+
+    /** Consumes the next frame of the stream, which begins at the given offset into the array. */
+    public final void onSample(final float[] pFrame, final int pOffset) {
+        // Fetch the current time.
+        final long     lTime     = this.mTime;
+        // Fetch the Columns.
+        final double[] lDistance = this.mDistance;
+        final long[]   lStart    = this.mStart;
+        final double[] lNext     = this.mNextDistance;
+        final long[]   lNextFrom = this.mNextStart;
+        // Fetch the length of the Template.
+        final int      lM        = lNext.length - 1;
+        // A new match may begin at this sample.
+        lNext[0]     = 0.0;
+        lNextFrom[0] = lTime;
+        // Iterate the Template.
+        for(int j = 1; j <= lM; j++) {
+            // Select the cheapest predecessor. (Prefer this sample's column on ties, so that stale starts don't linger.)
+            double lBest     = lNext[j - 1];
+            long   lBestFrom = lNextFrom[j - 1];
+            if(lDistance[j] < lBest) {
+                lBest     = lDistance[j];
+                lBestFrom = lStart[j];
+            }
+            if(lDistance[j - 1] < lBest) {
+                lBest     = lDistance[j - 1];
+                lBestFrom = lStart[j - 1];
+            }
+            // Accumulate the path.
+            lNext[j]     = lBest + this.getDistanceBetween(pFrame, pOffset, j - 1);
+            lNextFrom[j] = lBestFrom;
+        }
+        // Have we been holding on to a candidate?
+        if(this.mBestDistance <= this.getThreshold()) {
+            // Determine whether any path which overlaps the candidate could still beat it.
+            boolean lIsFinal = true;
+            for(int j = 1; j <= lM && lIsFinal; j++) {
+                lIsFinal = !(lNext[j] < this.mBestDistance && lNextFrom[j] <= this.mBestEnd);
+            }
+            // Is the candidate the best of its group?
+            if(lIsFinal) {
+                // Report the Match.
+                this.getListener().onMatch(this, this.mBestStart, this.mBestEnd, this.mBestDistance);
+                // Forget any paths which overlap the match we've just reported.
+                for(int j = 1; j <= lM; j++) {
+                    if(lNextFrom[j] <= this.mBestEnd) {
+                        lNext[j] = Double.POSITIVE_INFINITY;
+                    }
+                }
+                // Reset the Candidate.
+                this.mBestDistance = Double.POSITIVE_INFINITY;
+            }
+        }
+        // Has a complete alignment become the new candidate?
+        if(lNext[lM] <= this.getThreshold() && lNext[lM] < this.mBestDistance) {
+            // Track the Candidate.
+            this.mBestDistance = lNext[lM];
+            this.mBestStart    = lNextFrom[lM];
+            this.mBestEnd      = lTime;
+        }
+        // Swap the Columns.
+        this.mDistance     = lNext;
+        this.mNextDistance = lDistance;
+        this.mStart        = lNextFrom;
+        this.mNextStart    = lStart;
+        // Advance the Stream.
+        this.mTime++;
+    }
+
+    /** Computes the squared error between a frame of the stream and a frame of the Template, summed over each dimension. */
+    private double getDistanceBetween(final float[] pFrame, final int pOffset, final int pJ) {
+        // Fetch the offset of the Template's frame.
+        final int lTemplate = pJ * this.getDimensions();
+        // Declare the Distance.
+        double    lDistance = 0.0;
+        // Iterate the Dimensions.
+        for(int i = 0; i < this.getDimensions(); i++) {
+            // Calculate the square error.
+            final double lError = (double)pFrame[pOffset + i] - this.mTemplate[lTemplate + i];
+            // Accumulate the Distance.
+            lDistance += lError * lError;
+        }
+        // Return the Distance.
+        return lDistance;
+    }
+
+    /* Getters. */
+    public final int getDimensions() {
+        return this.mDimensions;
+    }
+
+    public final double getThreshold() {
+        return this.mThreshold;
+    }
+
+    public final long getTime() {
+        return this.mTime;
+    }
+
+    private final Listener getListener() {
+        return this.mListener;
+    }
+
+}
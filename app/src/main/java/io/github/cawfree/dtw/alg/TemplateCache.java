@@ -0,0 +1,377 @@
+package io.github.cawfree.dtw.alg;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ *  Caches the artefacts which are derived from templates, so that recognition against a stable library pays for them once
+ *  rather than on every query; per-dimension statistics, z-normalized copies, envelopes for a given Window and sample
+ *  length, and the downsampled pyramids used by {@link FastDTW}.
+ *
+ *  Artefacts are keyed by the identity of the template and the parameters they were derived with, so a template mustn't
+ *  be modified once it has been cached. The cache holds at most a given number of bytes of artefacts, evicting the least
+ *  recently used first; an artefact which is larger than the whole cache is returned without being kept. Cached templates
+ *  are strongly referenced until their artefacts are evicted or {@link #remove(float[])} is called.
+ *
+ *  The cache is thread-safe. Artefacts are derived outside of the lock, so two threads which miss at once may both derive
+ *  the same artefact; the second simply replaces the first.
+ **/
+public final class TemplateCache {
+
+    /* Artefact Kinds. */
+    private static final int KIND_STATISTICS = 0;
+    private static final int KIND_NORMALIZED = 1;
+    private static final int KIND_ENVELOPE   = 2;
+    private static final int KIND_PYRAMID    = 3;
+
+    /** An estimate of the bytes occupied by the header of an object or an array. */
+    private static final int SIZE_HEADER = 16;
+
+    /** The mean, standard deviation and range of each dimension of a template. */
+    public static final class Statistics {
+        /* Member Variables. */
+        private final double[] mMean;
+        private final double[] mDeviation;
+        private final float[]  mMinimum;
+        private final float[]  mMaximum;
+        /** Constructor. */
+        private Statistics(final int pDimensions) {
+            // Initialize Member Variables.
+            this.mMean      = new double[pDimensions];
+            this.mDeviation = new double[pDimensions];
+            this.mMinimum   = new float[pDimensions];
+            this.mMaximum   = new float[pDimensions];
+        }
+        /* Getters. */
+        public final double      getMean(final int pDimension) { return this.mMean[pDimension];      }
+        public final double getDeviation(final int pDimension) { return this.mDeviation[pDimension]; }
+        public final float    getMinimum(final int pDimension) { return this.mMinimum[pDimension];   }
+        public final float    getMaximum(final int pDimension) { return this.mMaximum[pDimension];   }
+        public final int         getDimensions()               { return this.mMean.length;           }
+    }
+
+    /** Identifies an artefact, by the identity of its template and the parameters it was derived with. */
+    private static final class Key {
+        /* Member Variables. */
+        private final float[] mTemplate;
+        private final int     mKind;
+        private final int     mFirst;
+        private final int     mSecond;
+        private final Object  mContext;
+        /** Constructor. */
+        private Key(final float[] pTemplate, final int pKind, final int pFirst, final int pSecond, final Object pContext) {
+            // Initialize Member Variables.
+            this.mTemplate = pTemplate;
+            this.mKind     = pKind;
+            this.mFirst    = pFirst;
+            this.mSecond   = pSecond;
+            this.mContext  = pContext;
+        }
+        /** Keys are equal when they refer to the same template, (and context), by identity. */
+        @Override public final boolean equals(final Object pObject) {
+            // Is the Object a Key?
+            if(!(pObject instanceof Key)) {
+                // Assert that the Object isn't equal.
+                return false;
+            }
+            // Fetch the Key.
+            final Key lKey = (Key)pObject;
+            // Compare the Keys.
+            return this.mTemplate == lKey.mTemplate && this.mKind == lKey.mKind && this.mFirst == lKey.mFirst && this.mSecond == lKey.mSecond && this.mContext == lKey.mContext;
+        }
+        /** Hashes the identities of the template and the context, along with the parameters. */
+        @Override public final int hashCode() {
+            // Combine the Hashes.
+            return ((((System.identityHashCode(this.mTemplate) * 31) + this.mKind) * 31 + this.mFirst) * 31 + this.mSecond) * 31 + System.identityHashCode(this.mContext);
+        }
+    }
+
+    /** Defines a cached artefact, along with its estimated size. */
+    private static final class Artefact {
+        /* Member Variables. */
+        private final Object mValue;
+        private final long   mBytes;
+        /** Constructor. */
+        private Artefact(final Object pValue, final long pBytes) {
+            // Initialize Member Variables.
+            this.mValue = pValue;
+            this.mBytes = pBytes;
+        }
+    }
+
+    /** Computes the per-dimension statistics of a series of interleaved frames. */
+    static Statistics summarize(final float[] pTemplate, final int pDimensions) {
+        // Allocate the Statistics.
+        final Statistics lStatistics = new Statistics(pDimensions);
+        // Fetch the number of Frames.
+        final int        lFrames     = pTemplate.length / pDimensions;
+        // Iterate the Dimensions.
+        for(int d = 0; d < pDimensions; d++) {
+            // Declare the running sums. (Welford's method, which doesn't cancel catastrophically.)
+            double lMean    = 0.0;
+            double lSquares = 0.0;
+            float  lMinimum = Float.POSITIVE_INFINITY;
+            float  lMaximum = Float.NEGATIVE_INFINITY;
+            // Iterate the Frames.
+            for(int i = 0; i < lFrames; i++) {
+                // Fetch the Value.
+                final float  lValue = pTemplate[(i * pDimensions) + d];
+                // Update the Mean and the sum of squared differences from it.
+                final double lDelta = lValue - lMean;
+                lMean    += lDelta / (i + 1);
+                lSquares += lDelta * (lValue - lMean);
+                // Update the Range.
+                lMinimum  = Math.min(lMinimum, lValue);
+                lMaximum  = Math.max(lMaximum, lValue);
+            }
+            // Assign the Statistics. (The deviation is of the population.)
+            lStatistics.mMean[d]      = lMean;
+            lStatistics.mDeviation[d] = Math.sqrt(lSquares / lFrames);
+            lStatistics.mMinimum[d]   = lMinimum;
+            lStatistics.mMaximum[d]   = lMaximum;
+        }
+        // Return the Statistics.
+        return lStatistics;
+    }
+
+    /** Estimates the number of bytes occupied by a float array. */
+    private static long getBytes(final float[] pArray) {
+        // Count the header and the values.
+        return TemplateCache.SIZE_HEADER + (4L * pArray.length);
+    }
+
+    /* Member Variables. */
+    private final long                         mCapacity;
+    private final LinkedHashMap<Key, Artefact> mArtefacts;
+    private       long                         mBytes;
+    private       long                         mHits;
+    private       long                         mMisses;
+    private       long                         mEvictions;
+
+    /** Constructor. The capacity is the most bytes of artefacts which may be held at once. */
+    public TemplateCache(final long pCapacity) {
+        // Ensure the capacity is valid.
+        if(pCapacity < 1) {
+            // Assert that the capacity is invalid.
+            throw new IllegalArgumentException("A TemplateCache needs a positive capacity, not " + pCapacity + " bytes.");
+        }
+        // Initialize Member Variables. (The map is kept in access order, so its head is the least recently used.)
+        this.mCapacity  = pCapacity;
+        this.mArtefacts = new LinkedHashMap<>(16, 0.75f, true);
+        this.mBytes     = 0;
+        this.mHits      = 0;
+        this.mMisses    = 0;
+        this.mEvictions = 0;
+    }
+
+    /** Returns the mean, deviation and range of each dimension of a template. */
+    public final Statistics getStatistics(final float[] pTemplate, final int pDimensions) {
+        // Declare the Key.
+        final Key        lKey        = new Key(pTemplate, TemplateCache.KIND_STATISTICS, pDimensions, 0, null);
+        // Is the artefact cached?
+        final Statistics lCached     = (Statistics)this.get(lKey);
+        if(lCached != null) {
+            // Reuse the Statistics.
+            return lCached;
+        }
+        // Compute the Statistics.
+        final Statistics lStatistics = TemplateCache.summarize(pTemplate, pDimensions);
+        // Cache the Statistics.
+        this.put(lKey, lStatistics, TemplateCache.SIZE_HEADER + (2L * (TemplateCache.SIZE_HEADER + (8L * pDimensions))) + (2L * (TemplateCache.SIZE_HEADER + (4L * pDimensions))));
+        // Return the Statistics.
+        return lStatistics;
+    }
+
+    /** Returns a copy of a template where each dimension has zero mean and unit deviation. (Constant dimensions are only centred.) */
+    public final float[] getNormalized(final float[] pTemplate, final int pDimensions) {
+        // Declare the Key.
+        final Key        lKey        = new Key(pTemplate, TemplateCache.KIND_NORMALIZED, pDimensions, 0, null);
+        // Is the artefact cached?
+        final float[]    lCached     = (float[])this.get(lKey);
+        if(lCached != null) {
+            // Reuse the Normalized Template.
+            return lCached;
+        }
+        // Fetch the Statistics.
+        final Statistics lStatistics = this.getStatistics(pTemplate, pDimensions);
+        // Allocate the Normalized Template.
+        final float[]    lNormalized = new float[pTemplate.length];
+        // Iterate the Values.
+        for(int i = 0; i < pTemplate.length; i++) {
+            // Fetch the Dimension.
+            final int    lDimension = i % pDimensions;
+            // Fetch the Deviation.
+            final double lDeviation = lStatistics.getDeviation(lDimension);
+            // Normalize the Value.
+            lNormalized[i] = (float)((pTemplate[i] - lStatistics.getMean(lDimension)) / ((lDeviation > 0.0) ? lDeviation : 1.0));
+        }
+        // Cache the Normalized Template.
+        this.put(lKey, lNormalized, TemplateCache.getBytes(lNormalized));
+        // Return the Normalized Template.
+        return lNormalized;
+    }
+
+    /** Returns the envelope of a univariate template for samples of the given length, inside the Window. (A null Window is unconstrained.) */
+    public final LowerBound.Envelope getEnvelope(final float[] pTemplate, final Window pWindow, final int pSampleLength) {
+        // Declare the Key.
+        final Key                 lKey      = new Key(pTemplate, TemplateCache.KIND_ENVELOPE, pSampleLength, 0, pWindow);
+        // Is the artefact cached?
+        final LowerBound.Envelope lCached   = (LowerBound.Envelope)this.get(lKey);
+        if(lCached != null) {
+            // Reuse the Envelope.
+            return lCached;
+        }
+        // Declare Iteration Constants.
+        final int                 lN        = pSampleLength;
+        final int                 lM        = pTemplate.length;
+        // Allocate the Envelope.
+        final LowerBound.Envelope lEnvelope = new LowerBound.Envelope(lN, new float[lN], new float[lN]);
+        // Compute the bounds of the Window.
+        final int[]               lStart    = new int[lN];
+        final int[]               lEnd      = new int[lN];
+        Window.getRanges(pWindow, lN, lM, lStart, lEnd);
+        // Compute the Envelope.
+        LowerBound.getEnvelope(pTemplate, lN, lStart, lEnd, lEnvelope.getUpper(), lEnvelope.getLower(), new int[lM]);
+        // Cache the Envelope.
+        this.put(lKey, lEnvelope, TemplateCache.SIZE_HEADER + TemplateCache.getBytes(lEnvelope.getUpper()) + TemplateCache.getBytes(lEnvelope.getLower()));
+        // Return the Envelope.
+        return lEnvelope;
+    }
+
+    /**
+     *  Returns the pyramid of a template; the template itself, followed by each halving of its resolution, as coarsened by
+     *  {@link FastDTW}, until no more than the given number of frames remain. The template itself isn't counted against the
+     *  capacity.
+     **/
+    public final float[][] getPyramid(final float[] pTemplate, final int pDimensions, final int pFrames) {
+        // Ensure the pyramid is valid.
+        if(pFrames < 1) {
+            // Assert that the pyramid is invalid.
+            throw new IllegalArgumentException("A pyramid must end with at least one frame, not " + pFrames + ".");
+        }
+        // Declare the Key.
+        final Key       lKey     = new Key(pTemplate, TemplateCache.KIND_PYRAMID, pDimensions, pFrames, null);
+        // Is the artefact cached?
+        final float[][] lCached  = (float[][])this.get(lKey);
+        if(lCached != null) {
+            // Reuse the Pyramid.
+            return lCached;
+        }
+        // Count the Levels.
+              int       lLevels  = 1;
+        for(int lLength = pTemplate.length / pDimensions; lLength > pFrames; lLength = (lLength + 1) / 2) {
+            lLevels++;
+        }
+        // Allocate the Pyramid.
+        final float[][] lPyramid = new float[lLevels][];
+        // Begin with the Template.
+                        lPyramid[0] = pTemplate;
+        // Declare the size of the Pyramid.
+              long      lBytes   = TemplateCache.SIZE_HEADER + (8L * lLevels);
+        // Iterate the Levels.
+        for(int i = 1; i < lLevels; i++) {
+            // Halve the resolution of the previous level.
+            lPyramid[i] = FastDTW.coarsen(lPyramid[i - 1], pDimensions);
+            // Count the Level.
+            lBytes     += TemplateCache.getBytes(lPyramid[i]);
+        }
+        // Cache the Pyramid.
+        this.put(lKey, lPyramid, lBytes);
+        // Return the Pyramid.
+        return lPyramid;
+    }
+
+    /** Fetches a cached artefact, counting the hit or the miss. */
+    private synchronized Object get(final Key pKey) {
+        // Fetch the Artefact. (This makes it the most recently used.)
+        final Artefact lArtefact = this.getArtefacts().get(pKey);
+        // Was the artefact cached?
+        if(lArtefact != null) {
+            // Count the Hit.
+            this.mHits++;
+            // Return the Value.
+            return lArtefact.mValue;
+        }
+        // Count the Miss.
+        this.mMisses++;
+        // Assert that the artefact wasn't cached.
+        return null;
+    }
+
+    /** Caches an artefact, then evicts the least recently used artefacts until the cache fits its capacity. */
+    private synchronized void put(final Key pKey, final Object pValue, final long pBytes) {
+        // Is the artefact too large to ever be cached?
+        if(pBytes > this.getCapacity()) {
+            // Don't cache it.
+            return;
+        }
+        // Buffer the Artefact.
+        final Artefact lReplaced = this.getArtefacts().put(pKey, new Artefact(pValue, pBytes));
+        // Track the size of the Cache.
+        this.mBytes += pBytes - ((lReplaced != null) ? lReplaced.mBytes : 0);
+        // Fetch the Artefacts, from the least recently used.
+        final Iterator<Artefact> lIterator = this.getArtefacts().values().iterator();
+        // Whilst the cache is too large...
+        while(this.mBytes > this.getCapacity()) {
+            // Evict the least recently used Artefact. (The new artefact is the most recent, and fits alone.)
+            this.mBytes -= lIterator.next().mBytes;
+            lIterator.remove();
+            // Count the Eviction.
+            this.mEvictions++;
+        }
+    }
+
+    /** Forgets every artefact which was derived from a template, so that it's no longer referenced. */
+    public final synchronized void remove(final float[] pTemplate) {
+        // Iterate the Artefacts.
+        final Iterator<Map.Entry<Key, Artefact>> lIterator = this.getArtefacts().entrySet().iterator();
+        while(lIterator.hasNext()) {
+            // Fetch the Entry.
+            final Map.Entry<Key, Artefact> lEntry = lIterator.next();
+            // Was the artefact derived from the template?
+            if(lEntry.getKey().mTemplate == pTemplate) {
+                // Forget the Artefact.
+                this.mBytes -= lEntry.getValue().mBytes;
+                lIterator.remove();
+            }
+        }
+    }
+
+    /** Forgets every artefact. The counters are kept. */
+    public final synchronized void clear() {
+        // Clear the Artefacts.
+        this.getArtefacts().clear();
+        this.mBytes = 0;
+    }
+
+    /* Getters. */
+    public final long getCapacity() {
+        return this.mCapacity;
+    }
+
+    private final LinkedHashMap<Key, Artefact> getArtefacts() {
+        return this.mArtefacts;
+    }
+
+    public final synchronized int size() {
+        return this.getArtefacts().size();
+    }
+
+    public final synchronized long getBytes() {
+        return this.mBytes;
+    }
+
+    public final synchronized long getHits() {
+        return this.mHits;
+    }
+
+    public final synchronized long getMisses() {
+        return this.mMisses;
+    }
+
+    public final synchronized long getEvictions() {
+        return this.mEvictions;
+    }
+
+}
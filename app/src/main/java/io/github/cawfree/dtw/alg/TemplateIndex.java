@@ -0,0 +1,273 @@
+package io.github.cawfree.dtw.alg;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *  Holds a library of labelled templates, and finds the k templates nearest to a sample.
+ *
+ *  Each candidate passes through a cascade of increasingly expensive lower bounds, (LB_Kim, LB_Keogh, then LB_Improved),
+ *  before an early-abandoning {@link DTW#getDistance(float[], float[], Window, double)}. Candidates are spread across a
+ *  fixed pool of workers, which all prune against the same k-th best distance; it's published through an atomic, so a
+ *  good match found on one core immediately tightens the cutoff used by every other.
+ *
+ *  Queries are serialized; each one is parallelised internally. Call {@link #close()} to release the workers.
+ **/
+public final class TemplateIndex {
+
+    /** Defines a template which was found to be near to a sample. */
+    public static final class Neighbour {
+        /* Member Variables. */
+        private final String  mLabel;
+        private final float[] mTemplate;
+        private final double  mDistance;
+        /** Constructor. */
+        private Neighbour(final String pLabel, final float[] pTemplate, final double pDistance) {
+            // Initialize Member Variables.
+            this.mLabel    = pLabel;
+            this.mTemplate = pTemplate;
+            this.mDistance = pDistance;
+        }
+        /* Getters. */
+        public final String     getLabel() { return this.mLabel;    }
+        public final float[] getTemplate() { return this.mTemplate; }
+        public final double  getDistance() { return this.mDistance; }
+    }
+
+    /** Orders Neighbours from the furthest to the nearest, so that the head of a queue is the first to be evicted. */
+    private static final Comparator<Neighbour> COMPARATOR_FURTHEST = new Comparator<Neighbour>() { @Override public final int compare(final Neighbour pA, final Neighbour pB) {
+        // Compare the Distances.
+        return Double.compare(pB.getDistance(), pA.getDistance());
+    } };
+
+    /** Scores the templates claimed by a single worker. */
+    private final class Worker implements Callable<Void> {
+        /* Member Variables. */
+        private final DTW        mDTW;
+        private final LowerBound mLowerBound;
+        /** Constructor. */
+        private Worker() {
+            // Allocate a Workspace for this Worker. (The envelope cache is shared across the index.)
+            final Workspace lWorkspace = new Workspace();
+            // Initialize Member Variables.
+            this.mDTW        = new DTW(lWorkspace);
+            this.mLowerBound = new LowerBound(TemplateIndex.this.getLowerBound(), lWorkspace);
+        }
+        /** Claims templates until there are none left to score. */
+        @Override public final Void call() {
+            // Fetch the Query.
+            final float[] lSample = TemplateIndex.this.mSample;
+            // Declare the index of the claimed Template.
+            int i;
+            // Whilst there are templates to claim...
+            while((i = TemplateIndex.this.getCursor().getAndIncrement()) < TemplateIndex.this.mCount) {
+                // Fetch the Template.
+                final float[] lTemplate = TemplateIndex.this.getTemplates().get(i);
+                // Read the best-so-far. (Lock-free; this may have been tightened by another Worker.)
+                final double  lCutoff   = TemplateIndex.this.getCutoff();
+                // Run the cascade, from the cheapest bound to the most expensive.
+                if(this.mLowerBound.getKim(lSample, lTemplate) > lCutoff) {
+                    continue;
+                }
+                // Fetch the Envelope. (This is cached across queries of the same length.)
+                final LowerBound.Envelope lEnvelope = this.mLowerBound.getEnvelope(lTemplate, lSample.length);
+                if(this.mLowerBound.getKeogh(lSample, lTemplate.length, lEnvelope) > lCutoff) {
+                    continue;
+                }
+                if(this.mLowerBound.getImproved(lSample, lTemplate, lEnvelope) > lCutoff) {
+                    continue;
+                }
+                // Compute the Distance, abandoning once it can't beat the best-so-far.
+                final double lDistance = this.mDTW.getDistance(lSample, lTemplate, TemplateIndex.this.getWindow(), TemplateIndex.this.getCutoff());
+                // Is this a candidate?
+                if(lDistance <= TemplateIndex.this.getCutoff()) {
+                    // Offer the Neighbour.
+                    TemplateIndex.this.onNeighbour(new Neighbour(TemplateIndex.this.getLabels().get(i), lTemplate, lDistance));
+                }
+            }
+            // Satisfy the compiler.
+            return null;
+        }
+    }
+
+    /* Member Variables. */
+    private final Window                     mWindow;
+    private final LowerBound                 mLowerBound;
+    private final List<String>               mLabels;
+    private final List<float[]>              mTemplates;
+    private final ExecutorService            mExecutorService;
+    private final List<Worker>               mWorkers;
+    private final AtomicInteger              mCursor;
+    private final AtomicLong                 mCutoff;
+    private final PriorityQueue<Neighbour>   mNeighbours;
+
+    /* Query State. (Published to the Workers by submission to the ExecutorService.) */
+    private float[] mSample;
+    private int     mCount;
+    private int     mK;
+
+    /** Constructor. Uses one worker per available core. */
+    public TemplateIndex(final Window pWindow) {
+        // Use every core.
+        this(pWindow, Runtime.getRuntime().availableProcessors());
+    }
+
+    /** Constructor. Distances are computed inside the Window; a null Window is unconstrained. */
+    public TemplateIndex(final Window pWindow, final int pParallelism) {
+        // Cache envelopes alongside their templates.
+        this(pWindow, pParallelism, null);
+    }
+
+    /** Constructor. Envelopes are held by the TemplateCache, so queries of varying lengths don't recompute them. */
+    public TemplateIndex(final Window pWindow, final int pParallelism, final TemplateCache pTemplateCache) {
+        // Ensure the parallelism is valid.
+        if(pParallelism < 1) {
+            // Assert that the parallelism is invalid.
+            throw new IllegalArgumentException("A TemplateIndex needs at least one worker, not " + pParallelism + ".");
+        }
+        // Initialize Member Variables.
+        this.mWindow          = pWindow;
+        this.mLowerBound      = new LowerBound(pWindow, new Workspace(), pTemplateCache);
+        this.mLabels          = new ArrayList<>();
+        this.mTemplates       = new ArrayList<>();
+        this.mExecutorService = Executors.newFixedThreadPool(pParallelism);
+        this.mWorkers         = new ArrayList<>(pParallelism);
+        this.mCursor          = new AtomicInteger();
+        this.mCutoff          = new AtomicLong();
+        this.mNeighbours      = new PriorityQueue<>(11, TemplateIndex.COMPARATOR_FURTHEST);
+        // Allocate the Workers.
+        for(int i = 0; i < pParallelism; i++) {
+            // Buffer a Worker.
+            this.mWorkers.add(new Worker());
+        }
+    }
+
+    /** Adds a labelled template to the index. The template is referenced rather than copied, so it mustn't be modified. */
+    public final synchronized void add(final String pLabel, final float[] pTemplate) {
+        // Ensure the template is valid.
+        if(pTemplate.length == 0) {
+            // Assert that the template is invalid.
+            throw new IllegalArgumentException("Can't index an empty template.");
+        }
+        // Buffer the Template.
+        this.getLabels().add(pLabel);
+        this.getTemplates().add(pTemplate);
+    }
+
+    /** Returns the k templates nearest to the sample, ordered from the nearest to the furthest. */
+    public final synchronized List<Neighbour> getNearest(final float[] pSample, final int pK) throws InterruptedException {
+        // Ensure the query is valid.
+        if(pK < 1 || pSample.length == 0) {
+            // Assert that the query is invalid.
+            throw new IllegalArgumentException("Expected a non-empty sample and a positive k.");
+        }
+        // Reset the Query.
+        this.mSample = pSample;
+        this.mCount  = this.getTemplates().size();
+        this.mK      = pK;
+        this.getCursor().set(0);
+        this.getNeighbours().clear();
+        this.setCutoff(DTW.ABANDONED);
+        // Score the Templates.
+        final List<Future<Void>> lFutures = this.getExecutorService().invokeAll(this.getWorkers());
+        // Iterate the Futures.
+        for(final Future<Void> lFuture : lFutures) {
+            try {
+                // Propagate any failures.
+                lFuture.get();
+            }
+            catch(final ExecutionException pExecutionException) {
+                // Rethrow the cause.
+                throw new IllegalStateException("Failed to score a template.", pExecutionException.getCause());
+            }
+        }
+        // Drain the Neighbours.
+        final List<Neighbour> lNeighbours = new ArrayList<>(this.getNeighbours());
+        // Order the Neighbours, from the nearest to the furthest.
+        Collections.sort(lNeighbours, Collections.reverseOrder(TemplateIndex.COMPARATOR_FURTHEST));
+        // Release the Query.
+        this.mSample = null;
+        // Return the Neighbours.
+        return lNeighbours;
+    }
+
+    /** Offers a Neighbour which may be amongst the k nearest, tightening the shared cutoff once k have been found. */
+    private void onNeighbour(final Neighbour pNeighbour) {
+        // Synchronize on the Neighbours.
+        synchronized(this.getNeighbours()) {
+            // Buffer the Neighbour.
+            this.getNeighbours().add(pNeighbour);
+            // Evict the furthest Neighbour, if we've found too many.
+            if(this.getNeighbours().size() > this.mK) {
+                this.getNeighbours().poll();
+            }
+            // Have we found k Neighbours?
+            if(this.getNeighbours().size() == this.mK) {
+                // Publish the distance of the furthest as the new cutoff.
+                this.setCutoff(this.getNeighbours().peek().getDistance());
+            }
+        }
+    }
+
+    /** Releases the workers. */
+    public final void close() {
+        // Shutdown the ExecutorService.
+        this.getExecutorService().shutdown();
+    }
+
+    /* Getters. */
+    public final Window getWindow() {
+        return this.mWindow;
+    }
+
+    public final synchronized int size() {
+        return this.getTemplates().size();
+    }
+
+    private final LowerBound getLowerBound() {
+        return this.mLowerBound;
+    }
+
+    private final List<String> getLabels() {
+        return this.mLabels;
+    }
+
+    private final List<float[]> getTemplates() {
+        return this.mTemplates;
+    }
+
+    private final ExecutorService getExecutorService() {
+        return this.mExecutorService;
+    }
+
+    private final List<Worker> getWorkers() {
+        return this.mWorkers;
+    }
+
+    private final AtomicInteger getCursor() {
+        return this.mCursor;
+    }
+
+    private final PriorityQueue<Neighbour> getNeighbours() {
+        return this.mNeighbours;
+    }
+
+    private final void setCutoff(final double pCutoff) {
+        this.mCutoff.set(Double.doubleToLongBits(pCutoff));
+    }
+
+    private final double getCutoff() {
+        return Double.longBitsToDouble(this.mCutoff.get());
+    }
+
+}
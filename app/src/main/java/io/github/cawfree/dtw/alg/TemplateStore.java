@@ -0,0 +1,543 @@
+package io.github.cawfree.dtw.alg;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ *  A read-only, memory-mapped file of labelled templates, along with the metadata which is derived from them up front.
+ *
+ *  The file begins with a little-endian header; a magic number, the format version, the number of dimensions and the
+ *  width of the Sakoe-Chiba band the envelopes were computed for, (or {@link #BAND_NONE}). It's followed by records, which
+ *  are only ever appended. Each record is an int32 length and the CRC32 of its body, followed by the body; an int32 count
+ *  of frames, an int32 length of the UTF-8 label, the label padded to four bytes, the interleaved float32 values, the
+ *  float32 mean, deviation, minimum and maximum of each dimension, and, when there's a band, the upper and lower envelope
+ *  of each dimension for samples of the template's own length, interleaved like the values.
+ *
+ *  Mapping a store only walks the record headers; values are never parsed or boxed, and are exposed as views straight
+ *  onto the mapped pages. Checksums are verified on request, (see {@link #map(File, boolean)} and {@link #isValid(int)}),
+ *  since doing so reads every page. A damaged record which no intact record follows was left behind by an interrupted
+ *  append, (it's cut short, zero-filled, or fails its checksum), so it's ignored, and overwritten by the next. A damaged
+ *  record which is followed by an intact one means the file itself is corrupt, so the whole store fails.
+ **/
+public final class TemplateStore {
+
+    /** Defines the magic number which begins a store. ("DTWT", little-endian.) */
+    private static final int MAGIC = 0x54575444;
+
+    /** Defines the version of the format. */
+    public static final int VERSION = 1;
+
+    /** Defines the band of a store which doesn't hold envelopes. */
+    public static final int BAND_NONE = -1;
+
+    /** The number of bytes in the header of a store, and of a record. */
+    private static final int SIZE_HEADER = 16;
+    private static final int SIZE_RECORD = 8;
+
+    /** The number of statistics stored per dimension. (Mean, deviation, minimum and maximum.) */
+    private static final int COUNT_STATISTICS = 4;
+
+    /** The character set of the labels. */
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    /** Appends templates to a store, creating it if the file is missing or empty. Any other file must already be a valid store. Not thread-safe. */
+    public static final class Writer {
+        /* Member Variables. */
+        private final RandomAccessFile mFile;
+        private final int              mDimensions;
+        private final int              mBand;
+        private final CRC32            mCRC32;
+        private       ByteBuffer       mBuffer;
+        private       long             mPosition;
+        /** Constructor. An existing store must have been written with the same dimensions and band. */
+        public Writer(final File pFile, final int pDimensions, final int pBand) throws IOException {
+            // Ensure the store is valid.
+            if(pDimensions < 1 || pBand < TemplateStore.BAND_NONE) {
+                // Assert that the store is invalid.
+                throw new IllegalArgumentException("A TemplateStore needs at least one dimension and a band of at least zero, (or none), not " + pDimensions + " and " + pBand + ".");
+            }
+            // Initialize Member Variables.
+            this.mFile       = new RandomAccessFile(pFile, "rw");
+            this.mDimensions = pDimensions;
+            this.mBand       = pBand;
+            this.mCRC32      = new CRC32();
+            this.mBuffer     = ByteBuffer.allocate(TemplateStore.SIZE_HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            this.mPosition   = 0;
+            try {
+                // Is the store new?
+                if(this.getChannel().size() == 0) {
+                    // Write the Header.
+                    this.mBuffer.putInt(TemplateStore.MAGIC).putInt(TemplateStore.VERSION).putInt(pDimensions).putInt(pBand).flip();
+                    this.write(0);
+                    // Records begin after the Header.
+                    this.mPosition = TemplateStore.SIZE_HEADER;
+                }
+                else if(this.getChannel().size() < TemplateStore.SIZE_HEADER) {
+                    // Assert that the store is truncated. (It may not be a store at all, so it's left untouched.)
+                    throw new IOException("The header of " + pFile + " is truncated.");
+                }
+                else {
+                    // Map the existing store, verifying every record. (We mustn't append after a corrupt record.)
+                    final TemplateStore lStore = TemplateStore.map(pFile, true);
+                    // Ensure the store matches.
+                    if(lStore.getDimensions() != pDimensions || lStore.getBand() != pBand) {
+                        // Assert that the store doesn't match.
+                        throw new IOException(pFile + " holds templates of " + lStore.getDimensions() + " dimensions with a band of " + lStore.getBand() + ", not " + pDimensions + " and " + pBand + ".");
+                    }
+                    // Append after the last intact record, discarding any interrupted append which follows it.
+                    this.mPosition = lStore.getEnd();
+                    this.getChannel().truncate(this.mPosition);
+                }
+            }
+            catch(final IOException pIOException) {
+                // Close the File.
+                this.mFile.close();
+                // Rethrow the failure.
+                throw pIOException;
+            }
+        }
+        /** Appends a labelled template of interleaved frames, along with its metadata. */
+        public final void append(final String pLabel, final float[] pTemplate) throws IOException {
+            // Fetch the Dimensions.
+            final int    lDimensions = this.getDimensions();
+            // Ensure the template is valid.
+            if(pTemplate.length == 0 || pTemplate.length % lDimensions != 0) {
+                // Assert that the template is invalid.
+                throw new IllegalArgumentException("Can't store a template of " + pTemplate.length + " values, in frames of " + lDimensions + " dimensions.");
+            }
+            // Encode the Label.
+            final byte[] lLabel      = pLabel.getBytes(TemplateStore.CHARSET);
+            // Fetch the number of Frames.
+            final int    lFrames     = pTemplate.length / lDimensions;
+            // Compute the size of the body.
+            final long   lBody       = TemplateStore.getBytes(lFrames, lDimensions, lLabel.length, this.getBand());
+            // Ensure the record can be indexed once it's mapped.
+            if(lBody > Integer.MAX_VALUE - TemplateStore.SIZE_RECORD) {
+                // Assert that the record is too large.
+                throw new IllegalArgumentException("A template of " + lFrames + " frames is too large to store.");
+            }
+            // Ensure the Buffer can hold the Record.
+            this.setCapacity(TemplateStore.SIZE_RECORD + (int)lBody);
+            // Fetch the Buffer.
+            final ByteBuffer lBuffer = this.mBuffer;
+            // Reserve the record header, then write the Frames and the Label.
+            lBuffer.clear();
+            lBuffer.position(TemplateStore.SIZE_RECORD);
+            lBuffer.putInt(lFrames).putInt(lLabel.length).put(lLabel);
+            // Pad the Label.
+            while((lBuffer.position() & 3) != 0) {
+                lBuffer.put((byte)0);
+            }
+            // Write the Values.
+            lBuffer.asFloatBuffer().put(pTemplate);
+            lBuffer.position(lBuffer.position() + (pTemplate.length * 4));
+            // Compute the Statistics.
+            final TemplateCache.Statistics lStatistics = TemplateCache.summarize(pTemplate, lDimensions);
+            // Write the Statistics.
+            for(int d = 0; d < lDimensions; d++) { lBuffer.putFloat((float)lStatistics.getMean(d));      }
+            for(int d = 0; d < lDimensions; d++) { lBuffer.putFloat((float)lStatistics.getDeviation(d)); }
+            for(int d = 0; d < lDimensions; d++) { lBuffer.putFloat(lStatistics.getMinimum(d));          }
+            for(int d = 0; d < lDimensions; d++) { lBuffer.putFloat(lStatistics.getMaximum(d));          }
+            // Does the store hold envelopes?
+            if(this.getBand() != TemplateStore.BAND_NONE) {
+                // Write the Envelopes.
+                this.onEnvelope(pTemplate, lFrames, lBuffer);
+            }
+            // Checksum the Body.
+            this.mCRC32.reset();
+            this.mCRC32.update(lBuffer.array(), lBuffer.arrayOffset() + TemplateStore.SIZE_RECORD, (int)lBody);
+            // Write the record header.
+            lBuffer.putInt(0, (int)lBody);
+            lBuffer.putInt(4, (int)this.mCRC32.getValue());
+            // Write the Record.
+            lBuffer.flip();
+            this.write(this.mPosition);
+            // Move onto the next Record.
+            this.mPosition += TemplateStore.SIZE_RECORD + lBody;
+        }
+        /** Writes the upper and lower envelopes of each dimension, for samples of the template's own length. */
+        private void onEnvelope(final float[] pTemplate, final int pFrames, final ByteBuffer pBuffer) {
+            // Fetch the Dimensions.
+            final int     lDimensions = this.getDimensions();
+            // Allocate the Buffers.
+            final float[] lAxis       = new float[pFrames];
+            final float[] lUpper      = new float[pFrames * lDimensions];
+            final float[] lLower      = new float[pFrames * lDimensions];
+            final float[] lAxisUpper  = new float[pFrames];
+            final float[] lAxisLower  = new float[pFrames];
+            final int[]   lStart      = new int[pFrames];
+            final int[]   lEnd        = new int[pFrames];
+            final int[]   lDeque      = new int[pFrames];
+            // Compute the bounds of the Band.
+            Window.getRanges(Window.sakoeChiba(this.getBand()), pFrames, pFrames, lStart, lEnd);
+            // Iterate the Dimensions.
+            for(int d = 0; d < lDimensions; d++) {
+                // Extract the Axis.
+                for(int i = 0; i < pFrames; i++) {
+                    lAxis[i] = pTemplate[(i * lDimensions) + d];
+                }
+                // Compute the Envelope of the Axis.
+                LowerBound.getEnvelope(lAxis, pFrames, lStart, lEnd, lAxisUpper, lAxisLower, lDeque);
+                // Interleave the Envelope.
+                for(int i = 0; i < pFrames; i++) {
+                    lUpper[(i * lDimensions) + d] = lAxisUpper[i];
+                    lLower[(i * lDimensions) + d] = lAxisLower[i];
+                }
+            }
+            // Write the Envelopes.
+            pBuffer.asFloatBuffer().put(lUpper).put(lLower);
+            pBuffer.position(pBuffer.position() + ((lUpper.length + lLower.length) * 4));
+        }
+        /** Grows the Buffer, if it can't hold the given number of bytes. */
+        private void setCapacity(final int pBytes) {
+            // Is the Buffer too small?
+            if(this.mBuffer.capacity() < pBytes) {
+                // Allocate a larger Buffer.
+                this.mBuffer = ByteBuffer.allocate(Math.max(pBytes, this.mBuffer.capacity() << 1)).order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+        /** Writes the remainder of the Buffer at the given position of the file. */
+        private void write(final long pPosition) throws IOException {
+            // Declare the position to write at.
+            long lPosition = pPosition;
+            // Whilst there are bytes to write...
+            while(this.mBuffer.hasRemaining()) {
+                // Write the Bytes.
+                lPosition += this.getChannel().write(this.mBuffer, lPosition);
+            }
+        }
+        /** Forces every appended template out to the storage device. */
+        public final void flush() throws IOException {
+            // Force the Channel. (The header never changes, so metadata doesn't need to be forced.)
+            this.getChannel().force(false);
+        }
+        /** Flushes and closes the store. */
+        public final void close() throws IOException {
+            try {
+                // Flush the Templates.
+                this.flush();
+            }
+            finally {
+                // Close the File.
+                this.mFile.close();
+            }
+        }
+        /* Getters. */
+        private final FileChannel getChannel() { return this.mFile.getChannel(); }
+        public final int       getDimensions() { return this.mDimensions;        }
+        public final int             getBand() { return this.mBand;              }
+    }
+
+    /** Maps a store, without verifying its checksums. */
+    public static TemplateStore map(final File pFile) throws IOException {
+        // Map the store.
+        return TemplateStore.map(pFile, false);
+    }
+
+    /**
+     *  Maps a store. When verifying, a record whose checksum doesn't match its contents fails the whole store, unless it's
+     *  the last record; that's an interrupted append, and is ignored.
+     **/
+    public static TemplateStore map(final File pFile, final boolean pIsVerified) throws IOException {
+        // Open the File.
+        final RandomAccessFile lFile = new RandomAccessFile(pFile, "r");
+        try {
+            // Fetch the Channel.
+            final FileChannel lChannel = lFile.getChannel();
+            // Fetch the size of the File.
+            final long        lSize    = lChannel.size();
+            // Ensure the store can be mapped at once.
+            if(lSize > Integer.MAX_VALUE) {
+                // Assert that the store is too large.
+                throw new IOException(pFile + " is too large to map, at " + lSize + " bytes.");
+            }
+            // Ensure there's a header.
+            if(lSize < TemplateStore.SIZE_HEADER) {
+                // Assert that the store is truncated.
+                throw new IOException("The header of " + pFile + " is truncated.");
+            }
+            // Map the File.
+            final ByteBuffer lBuffer = lChannel.map(FileChannel.MapMode.READ_ONLY, 0, lSize).order(ByteOrder.LITTLE_ENDIAN);
+            // Ensure the header is valid.
+            if(lBuffer.getInt(0) != TemplateStore.MAGIC) {
+                // Assert that the file isn't a store.
+                throw new IOException(pFile + " isn't a template store.");
+            }
+            if(lBuffer.getInt(4) != TemplateStore.VERSION) {
+                // Assert that the version isn't supported.
+                throw new IOException(pFile + " is of version " + lBuffer.getInt(4) + ", which isn't supported.");
+            }
+            if(lBuffer.getInt(8) < 1 || lBuffer.getInt(12) < TemplateStore.BAND_NONE) {
+                // Assert that the header is corrupt.
+                throw new IOException("The header of " + pFile + " is corrupt.");
+            }
+            // Allocate the Store.
+            final TemplateStore lStore  = new TemplateStore(lBuffer, lBuffer.getInt(8), lBuffer.getInt(12));
+            // Declare the position of the current Record.
+                  int           lOffset = TemplateStore.SIZE_HEADER;
+            // Whilst there's a complete record header...
+            while(lSize - lOffset >= TemplateStore.SIZE_RECORD) {
+                // Fetch the number of Frames. (Negative if the Record is damaged.)
+                final int     lFrames = lStore.getFrames(lOffset, lSize);
+                // Is the Record whole, and does it match its checksum when verifying?
+                final boolean lIsWhole = (lFrames > 0);
+                if(!lIsWhole || (pIsVerified && !lStore.isChecksumValid(lOffset))) {
+                    // Is there an intact Record after it?
+                    if(lStore.hasRecord(lOffset + 4, lSize)) {
+                        // Assert that the store is corrupt.
+                        throw new IOException(lIsWhole ? ("The checksum of the template at byte " + lOffset + " of " + pFile + " doesn't match.") : ("The template at byte " + lOffset + " of " + pFile + " is corrupt."));
+                    }
+                    // Ignore the interrupted append.
+                    break;
+                }
+                // Index the Record.
+                lStore.add(lOffset, lFrames);
+                // Move onto the next Record.
+                lOffset += TemplateStore.SIZE_RECORD + lBuffer.getInt(lOffset);
+            }
+            // Track the end of the complete Records.
+            lStore.mEnd = lOffset;
+            // Return the Store. (Mappings remain valid once the file has been closed.)
+            return lStore;
+        }
+        finally {
+            // Close the File.
+            lFile.close();
+        }
+    }
+
+    /** Computes the number of bytes in the body of a record. */
+    private static long getBytes(final int pFrames, final int pDimensions, final int pLabel, final int pBand) {
+        // Fetch the number of values in the template.
+        final long lLength = (long)pFrames * pDimensions;
+        // Count the Frames and the Label, (padded), the Values and the Statistics, then the Envelopes.
+        return 8L + ((pLabel + 3L) & ~3L) + (4L * lLength) + (4L * TemplateStore.COUNT_STATISTICS * pDimensions) + ((pBand == TemplateStore.BAND_NONE) ? 0L : (8L * lLength));
+    }
+
+    /* Member Variables. */
+    private final ByteBuffer mBuffer;
+    private final int        mDimensions;
+    private final int        mBand;
+    private final CRC32      mCRC32;
+    private final byte[]     mChunk;
+    private       int[]      mOffset;
+    private       int[]      mFrames;
+    private       String[]   mLabels;
+    private       int        mCount;
+    private       int        mEnd;
+
+    /** Constructor. Stores are created by mapping a file. */
+    private TemplateStore(final ByteBuffer pBuffer, final int pDimensions, final int pBand) {
+        // Initialize Member Variables.
+        this.mBuffer     = pBuffer;
+        this.mDimensions = pDimensions;
+        this.mBand       = pBand;
+        this.mCRC32      = new CRC32();
+        this.mChunk      = new byte[4096];
+        this.mOffset     = new int[16];
+        this.mFrames     = new int[16];
+        this.mLabels     = new String[16];
+        this.mCount      = 0;
+        this.mEnd        = TemplateStore.SIZE_HEADER;
+    }
+
+    /** Indexes a record. */
+    private void add(final int pOffset, final int pFrames) {
+        // Is the index full?
+        if(this.mCount == this.mFrames.length) {
+            // Grow the index.
+            this.mOffset = Arrays.copyOf(this.mOffset, this.mCount << 1);
+            this.mFrames = Arrays.copyOf(this.mFrames, this.mCount << 1);
+            this.mLabels = Arrays.copyOf(this.mLabels, this.mCount << 1);
+        }
+        // Buffer the Record.
+        this.mOffset[this.mCount] = pOffset;
+        this.mFrames[this.mCount] = pFrames;
+        // Count the Record.
+        this.mCount++;
+    }
+
+    /**
+     *  Returns the number of frames of the record at the given offset of a file of the given size, or -1 if the record is
+     *  cut short, or its length disagrees with its contents.
+     **/
+    private int getFrames(final int pOffset, final long pSize) {
+        // Fetch the length of the Body.
+        final int lBody   = this.mBuffer.getInt(pOffset);
+        // Has the Record been cut short?
+        if(lBody < 8 || lBody > pSize - pOffset - TemplateStore.SIZE_RECORD) {
+            // The Record is damaged.
+            return -1;
+        }
+        // Fetch the number of Frames, and the length of the Label.
+        final int lFrames = this.mBuffer.getInt(pOffset + TemplateStore.SIZE_RECORD);
+        final int lLabel  = this.mBuffer.getInt(pOffset + TemplateStore.SIZE_RECORD + 4);
+        // Does the Body agree with its contents?
+        if(lFrames < 1 || lLabel < 0 || TemplateStore.getBytes(lFrames, this.getDimensions(), lLabel, this.getBand()) != lBody) {
+            // The Record is damaged.
+            return -1;
+        }
+        // Return the Frames.
+        return lFrames;
+    }
+
+    /**
+     *  Determines whether an intact record, (whole, and matching its checksum), begins at any offset from the given one
+     *  onwards. Records are four-byte aligned, so only aligned offsets are searched. This is only used to decide whether
+     *  a damaged record was the last, so it needn't be fast.
+     **/
+    private boolean hasRecord(final int pOffset, final long pSize) {
+        // Iterate the aligned offsets which could hold a record header.
+        for(int i = pOffset; pSize - i >= TemplateStore.SIZE_RECORD; i += 4) {
+            // Is there an intact Record here?
+            if(this.getFrames(i, pSize) > 0 && this.isChecksumValid(i)) {
+                // There's an intact Record.
+                return true;
+            }
+        }
+        // There are no more Records.
+        return false;
+    }
+
+    /** Determines whether the checksum of a template matches its contents. This reads every page of the record. */
+    public final synchronized boolean isValid(final int pIndex) {
+        // Checksum the Record.
+        return this.isChecksumValid(this.mOffset[pIndex]);
+    }
+
+    /** Determines whether the checksum of the record at the given offset matches its body. Callers must hold the lock, or own the store. */
+    private boolean isChecksumValid(final int pOffset) {
+        // Duplicate the Buffer, so that positions aren't shared between threads.
+        final ByteBuffer lBuffer = this.mBuffer.duplicate();
+        // Fetch the beginning and the end of the Body.
+        final int        lStart  = pOffset + TemplateStore.SIZE_RECORD;
+        final int        lEnd    = lStart + this.mBuffer.getInt(pOffset);
+        // Select the Body.
+        lBuffer.position(lStart);
+        lBuffer.limit(lEnd);
+        // Checksum the Body, one chunk at a time.
+        this.mCRC32.reset();
+        while(lBuffer.hasRemaining()) {
+            // Fetch the size of the Chunk.
+            final int lChunk = Math.min(this.mChunk.length, lBuffer.remaining());
+            // Checksum the Chunk.
+            lBuffer.get(this.mChunk, 0, lChunk);
+            this.mCRC32.update(this.mChunk, 0, lChunk);
+        }
+        // Compare the Checksums.
+        return (int)this.mCRC32.getValue() == this.mBuffer.getInt(pOffset + 4);
+    }
+
+    /** Returns a float32 view of part of a record, straight onto the mapped pages. Views are independent, so are safe to share. */
+    private FloatBuffer getView(final int pOffset, final int pLength) {
+        // Duplicate the Buffer, so that positions aren't shared between threads.
+        final ByteBuffer lBuffer = this.mBuffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        // Select the Values.
+        lBuffer.position(pOffset);
+        lBuffer.limit(pOffset + (pLength * 4));
+        // Return the View.
+        return lBuffer.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+    }
+
+    /** Returns the offset of the values of a template. */
+    private int getValues(final int pIndex) {
+        // Skip the record header, the Frames and the padded Label.
+        return this.mOffset[pIndex] + TemplateStore.SIZE_RECORD + 8 + ((this.mBuffer.getInt(this.mOffset[pIndex] + TemplateStore.SIZE_RECORD + 4) + 3) & ~3);
+    }
+
+    /** Returns a view of the interleaved values of a template. */
+    public final FloatBuffer getTemplate(final int pIndex) {
+        // Return the View.
+        return this.getView(this.getValues(pIndex), this.getLength(pIndex));
+    }
+
+    /** Bulk-copies the values of a template into an array of exactly {@link #getLength(int)} values. */
+    public final float[] get(final int pIndex, final float[] pValues) {
+        // Copy the Values.
+        this.getTemplate(pIndex).get(pValues);
+        // Return the Values.
+        return pValues;
+    }
+
+    /** Returns a view of the mean, deviation, minimum and maximum of a template, each as a run of one value per dimension. */
+    public final FloatBuffer getStatistics(final int pIndex) {
+        // Return the View.
+        return this.getView(this.getValues(pIndex) + (this.getLength(pIndex) * 4), TemplateStore.COUNT_STATISTICS * this.getDimensions());
+    }
+
+    /** Returns a view of the interleaved upper envelope of a template, or null if the store doesn't hold envelopes. */
+    public final FloatBuffer getUpper(final int pIndex) {
+        // Does the store hold envelopes?
+        if(this.getBand() == TemplateStore.BAND_NONE) {
+            // There's no Envelope.
+            return null;
+        }
+        // Return the View.
+        return this.getView(this.getValues(pIndex) + ((this.getLength(pIndex) + (TemplateStore.COUNT_STATISTICS * this.getDimensions())) * 4), this.getLength(pIndex));
+    }
+
+    /** Returns a view of the interleaved lower envelope of a template, or null if the store doesn't hold envelopes. */
+    public final FloatBuffer getLower(final int pIndex) {
+        // Does the store hold envelopes?
+        if(this.getBand() == TemplateStore.BAND_NONE) {
+            // There's no Envelope.
+            return null;
+        }
+        // Return the View.
+        return this.getView(this.getValues(pIndex) + (((this.getLength(pIndex) << 1) + (TemplateStore.COUNT_STATISTICS * this.getDimensions())) * 4), this.getLength(pIndex));
+    }
+
+    /** Returns the label of a template. Labels are decoded the first time they're asked for. */
+    public final synchronized String getLabel(final int pIndex) {
+        // Has the Label been decoded?
+        if(this.mLabels[pIndex] == null) {
+            // Fetch the beginning of the Label.
+            final int        lStart  = this.mOffset[pIndex] + TemplateStore.SIZE_RECORD + 8;
+            // Duplicate the Buffer, so that positions aren't shared between threads.
+            final ByteBuffer lBuffer = this.mBuffer.duplicate();
+            // Select the Label.
+            lBuffer.position(lStart);
+            lBuffer.limit(lStart + this.mBuffer.getInt(lStart - 4));
+            // Decode the Label.
+            this.mLabels[pIndex] = TemplateStore.CHARSET.decode(lBuffer).toString();
+        }
+        // Return the Label.
+        return this.mLabels[pIndex];
+    }
+
+    /* Getters. */
+    public final int getDimensions() {
+        return this.mDimensions;
+    }
+
+    /** Returns the width of the Sakoe-Chiba band the envelopes were computed for, or {@link #BAND_NONE}. */
+    public final int getBand() {
+        return this.mBand;
+    }
+
+    public final int size() {
+        return this.mCount;
+    }
+
+    public final int getFrames(final int pIndex) {
+        return this.mFrames[pIndex];
+    }
+
+    public final int getLength(final int pIndex) {
+        return this.mFrames[pIndex] * this.getDimensions();
+    }
+
+    /** Returns the number of bytes occupied by the header and the complete records. */
+    final int getEnd() {
+        return this.mEnd;
+    }
+
+}
@@ -0,0 +1,307 @@
+package io.github.cawfree.dtw.alg;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *  Computes the distance between two very long series across many cores. (Tiled wavefront.)
+ *
+ *  The cost matrix is divided into square tiles. A tile only depends upon the tiles above, to the left and diagonally
+ *  behind it, so every tile along an anti-diagonal of tiles can be computed at the same time; the anti-diagonals are
+ *  swept in order, and the tiles of each one are shared between the workers. Only the last row and column of each tile
+ *  are kept, along with the last cell of each tile of the two anti-diagonals behind the current one, so memory is O(N + M)
+ *  rather than O(N * M), and the result is identical to {@link DTW#getDistance(float[], float[])}.
+ *
+ *  Comparisons are serialized; each one is parallelised internally. Call {@link #close()} to release the workers.
+ **/
+public final class TiledDTW {
+
+    /** Computes the tiles claimed by a single worker. */
+    private final class Worker implements Callable<Void> {
+        /* Member Variables. */
+        private final Workspace mWorkspace;
+        /** Constructor. */
+        private Worker() {
+            // Allocate a Workspace for this Worker.
+            this.mWorkspace = new Workspace();
+        }
+        /** Claims tiles of the current anti-diagonal until there are none left to compute. */
+        @Override public final Void call() {
+            // Declare the index of the claimed Tile.
+            int lTile;
+            // Whilst there are tiles to claim...
+            while((lTile = TiledDTW.this.getCursor().getAndIncrement()) < TiledDTW.this.mCount) {
+                // Fetch the row of the Tile. (The column follows from the anti-diagonal.)
+                final int lRow = TiledDTW.this.mFirst + lTile;
+                // Compute the Tile.
+                TiledDTW.this.onTile(this.mWorkspace, lRow, TiledDTW.this.mDiagonal - lRow);
+            }
+            // Satisfy the compiler.
+            return null;
+        }
+    }
+
+    /**
+     *  The number of anti-diagonals of tiles whose corners are kept. A tile's corner is published two anti-diagonals before
+     *  it's read, and the anti-diagonals either side of it publish corners for the same rows, so three are kept in a ring.
+     **/
+    private static final int COUNT_CORNERS = 3;
+
+    /* Member Variables. */
+    private final DTW             mDTW;
+    private final int             mTile;
+    private final ExecutorService mExecutorService;
+    private final List<Worker>    mWorkers;
+    private final AtomicInteger   mCursor;
+
+    /* Comparison State. (Published to the Workers by submission to the ExecutorService.) */
+    private float[]  mSample;
+    private float[]  mTemplate;
+    private int      mN;
+    private int      mM;
+    private int      mRows;
+    private int      mColumns;
+    private double[] mBottom;
+    private int[]    mBottomLength;
+    private double[] mRight;
+    private int[]    mRightLength;
+    private double[] mCorner;
+    private int[]    mCornerLength;
+    private int      mDiagonal;
+    private int      mFirst;
+    private int      mCount;
+
+    /** Constructor. Uses one worker per available core. */
+    public TiledDTW(final DTW pDTW, final int pTile) {
+        // Use every core.
+        this(pDTW, pTile, Runtime.getRuntime().availableProcessors());
+    }
+
+    /** Constructor. The DTW defines the dimensions and the Metric; its Workspace is left alone, since each worker owns one. */
+    public TiledDTW(final DTW pDTW, final int pTile, final int pParallelism) {
+        // Ensure the tiling is valid.
+        if(pTile < 1 || pParallelism < 1) {
+            // Assert that the tiling is invalid.
+            throw new IllegalArgumentException("A TiledDTW needs a positive tile size and at least one worker, not " + pTile + " and " + pParallelism + ".");
+        }
+        // Initialize Member Variables.
+        this.mDTW             = pDTW;
+        this.mTile            = pTile;
+        this.mExecutorService = Executors.newFixedThreadPool(pParallelism);
+        this.mWorkers         = new ArrayList<>(pParallelism);
+        this.mCursor          = new AtomicInteger();
+        // Allocate the Workers.
+        for(int i = 0; i < pParallelism; i++) {
+            // Buffer a Worker.
+            this.mWorkers.add(new Worker());
+        }
+    }
+
+    /** Computes the distance between a sample and a template, which is identical to {@link DTW#getDistance(float[], float[])}. */
+    public final synchronized double getDistance(final float[] pSample, final float[] pTemplate) throws InterruptedException {
+        // Fetch the Dimensions.
+        final int lDimensions = this.getDTW().getDimensions();
+        // Ensure the series are made of whole frames.
+        if(pSample.length % lDimensions != 0 || pTemplate.length % lDimensions != 0) {
+            // Assert that the series are invalid.
+            throw new IllegalArgumentException("Expected series of whole " + lDimensions + "-dimensional frames.");
+        }
+        // Declare Iteration Constants. (Measured in frames.)
+        final int lN = pSample.length   / lDimensions;
+        final int lM = pTemplate.length / lDimensions;
+        // Ensure the samples are valid.
+        if(lN == 0 || lM == 0) {
+            // Assert a bad result.
+            return Double.NaN;
+        }
+        // Compute the number of Tiles along each series.
+        final int lRows    = ((lN - 1) / this.getTile()) + 1;
+        final int lColumns = ((lM - 1) / this.getTile()) + 1;
+        // Reset the Comparison. (Nothing lies above the first row, or to the left of the first column.)
+        this.mSample       = pSample;
+        this.mTemplate     = pTemplate;
+        this.mN            = lN;
+        this.mM            = lM;
+        this.mRows         = lRows;
+        this.mColumns      = lColumns;
+        this.mBottom       = new double[lM];
+        this.mBottomLength = new int[lM];
+        this.mRight        = new double[lN];
+        this.mRightLength  = new int[lN];
+        this.mCorner       = new double[TiledDTW.COUNT_CORNERS * lRows];
+        this.mCornerLength = new int[TiledDTW.COUNT_CORNERS * lRows];
+        Arrays.fill(this.mBottom, Double.POSITIVE_INFINITY);
+        Arrays.fill(this.mRight,  Double.POSITIVE_INFINITY);
+        Arrays.fill(this.mCorner, Double.POSITIVE_INFINITY);
+        // Iterate the anti-diagonals of Tiles.
+        for(int d = 0; d < (lRows + lColumns) - 1; d++) {
+            // Fetch the rows of the Tiles which lie along this anti-diagonal.
+            final int lFirst = Math.max(0, d - (lColumns - 1));
+            final int lLast  = Math.min(lRows - 1, d);
+            // Publish the anti-diagonal.
+            this.mDiagonal = d;
+            this.mFirst    = lFirst;
+            this.mCount    = (lLast - lFirst) + 1;
+            this.getCursor().set(0);
+            // Are there enough Tiles to share?
+            if(this.mCount == 1) {
+                // Compute the Tile on this thread, using the first Worker's Workspace.
+                this.onTile(this.getWorkers().get(0).mWorkspace, lFirst, d - lFirst);
+            }
+            else {
+                // Compute the Tiles.
+                final List<Future<Void>> lFutures = this.getExecutorService().invokeAll(this.getWorkers());
+                // Iterate the Futures.
+                for(final Future<Void> lFuture : lFutures) {
+                    try {
+                        // Propagate any failures.
+                        lFuture.get();
+                    }
+                    catch(final ExecutionException pExecutionException) {
+                        // Rethrow the cause.
+                        throw new IllegalStateException("Failed to compute a tile.", pExecutionException.getCause());
+                    }
+                }
+            }
+        }
+        // Fetch the last cell.
+        final double lDistance = this.mBottom[lM - 1] / this.mBottomLength[lM - 1];
+        // Release the Comparison.
+        this.mSample       = null;
+        this.mTemplate     = null;
+        this.mBottom       = null;
+        this.mBottomLength = null;
+        this.mRight        = null;
+        this.mRightLength  = null;
+        this.mCorner       = null;
+        this.mCornerLength = null;
+        // Return the Distance. (Normalize by the length of the Warping Path.)
+        return lDistance;
+    }
+
+    /**
+     *  Computes a single Tile. The row above the tile is read from the bottom boundary and the column to its left from the
+     *  right boundary, which the tile then overwrites with its own last row and column; each rolling row holds the cell to
+     *  the left of the tile at index zero, so the first column needs no special case.
+     **/
+    private void onTile(final Workspace pWorkspace, final int pRow, final int pColumn) {
+        // Fetch the bounds of the Tile.
+        final int      lRowStart       = pRow    * this.getTile();
+        final int      lRowEnd         = Math.min(this.mN, lRowStart    + this.getTile());
+        final int      lColumnStart    = pColumn * this.getTile();
+        final int      lColumnEnd      = Math.min(this.mM, lColumnStart + this.getTile());
+        final int      lWidth          = lColumnEnd - lColumnStart;
+        // Fetch the Boundaries.
+        final double[] lBottom         = this.mBottom;
+        final int[]    lBottomLength   = this.mBottomLength;
+        final double[] lRight          = this.mRight;
+        final int[]    lRightLength    = this.mRightLength;
+        // Fetch the Rolling Global Distances and Path Lengths.
+              double[] lPrevious       = pWorkspace.getDoubles(Workspace.SLOT_PREVIOUS, lWidth + 1);
+              double[] lCurrent        = pWorkspace.getDoubles(Workspace.SLOT_CURRENT,  lWidth + 1);
+              int[]    lPreviousLength = pWorkspace.getInts(Workspace.SLOT_PREVIOUS_LENGTH, lWidth + 1);
+              int[]    lCurrentLength  = pWorkspace.getInts(Workspace.SLOT_CURRENT_LENGTH,  lWidth + 1);
+        // Fetch the Local Distances of a row.
+        final double[] lCosts          = pWorkspace.getDoubles(Workspace.SLOT_COSTS, lColumnEnd);
+        // Fetch the Metric and the Dimensions.
+        final Metric   lMetric         = this.getDTW().getMetric();
+        final int      lDimensions     = this.getDTW().getDimensions();
+        // Fetch the corner of the Tile, which was published by the anti-diagonal two behind this one.
+        final int      lCorner         = (((pRow + pColumn + TiledDTW.COUNT_CORNERS - 2) % TiledDTW.COUNT_CORNERS) * this.mRows) + pRow;
+        // Fetch the row above the Tile, beginning with the cell diagonally behind it.
+        lPrevious[0]       = this.mCorner[lCorner];
+        lPreviousLength[0] = this.mCornerLength[lCorner];
+        System.arraycopy(lBottom,       lColumnStart, lPrevious,       1, lWidth);
+        System.arraycopy(lBottomLength, lColumnStart, lPreviousLength, 1, lWidth);
+        // Iterate the rows of the Tile.
+        for(int i = lRowStart; i < lRowEnd; i++) {
+            // Fetch the cell to the left of the Tile.
+            lCurrent[0]       = lRight[i];
+            lCurrentLength[0] = lRightLength[i];
+            // Calculate the Local Distances along this row.
+            lMetric.getCosts(this.mSample, i * lDimensions, this.mTemplate, lColumnStart, lColumnEnd - 1, lDimensions, lCosts);
+            // Iterate the columns of the Tile.
+            for(int k = 1; k <= lWidth; k++) {
+                // Fetch the Local Distance.
+                final double lLocal = lCosts[lColumnStart + k - 1];
+                // Are we at the origin?
+                if(i == 0 && lColumnStart + k == 1) {
+                    // Initialize the Global.
+                    lCurrent[k]       = lLocal;
+                    lCurrentLength[k] = 1;
+                    continue;
+                }
+                // Select the neighbour which backtracking would follow, in the order of the MinimaBuffer. (Up, left, then diagonal.)
+                      double lMinimum = lPrevious[k];
+                      int    lLength  = lPreviousLength[k];
+                if(lCurrent[k - 1] < lMinimum) {
+                    lMinimum = lCurrent[k - 1];
+                    lLength  = lCurrentLength[k - 1];
+                }
+                if(lPrevious[k - 1] < lMinimum) {
+                    lMinimum = lPrevious[k - 1];
+                    lLength  = lPreviousLength[k - 1];
+                }
+                // Accumulate the path.
+                lCurrent[k]       = lMinimum + lLocal;
+                lCurrentLength[k] = lLength + 1;
+            }
+            // Publish the last column of this row, for the Tile to the right.
+            lRight[i]       = lCurrent[lWidth];
+            lRightLength[i] = lCurrentLength[lWidth];
+            // Swap the Rows.
+            final double[] lRow     = lPrevious;
+                           lPrevious = lCurrent;
+                           lCurrent  = lRow;
+            final int[]    lLengths = lPreviousLength;
+                     lPreviousLength = lCurrentLength;
+                     lCurrentLength  = lLengths;
+        }
+        // Publish the last row of the Tile, for the Tile below.
+        System.arraycopy(lPrevious,       1, lBottom,       lColumnStart, lWidth);
+        System.arraycopy(lPreviousLength, 1, lBottomLength, lColumnStart, lWidth);
+        // Is there a Tile diagonally ahead of this one?
+        if((pRow + 1) * this.getTile() < this.mN && (pColumn + 1) < this.mColumns) {
+            // Fetch where the Tile diagonally ahead will look for its corner. (It's indexed by this anti-diagonal, and its own row.)
+            final int lAhead = (((pRow + pColumn) % TiledDTW.COUNT_CORNERS) * this.mRows) + pRow + 1;
+            // Publish the last cell of the Tile.
+            this.mCorner[lAhead]       = lPrevious[lWidth];
+            this.mCornerLength[lAhead] = lPreviousLength[lWidth];
+        }
+    }
+
+    /** Releases the workers. */
+    public final void close() {
+        // Shutdown the ExecutorService.
+        this.getExecutorService().shutdown();
+    }
+
+    /* Getters. */
+    public final DTW getDTW() {
+        return this.mDTW;
+    }
+
+    public final int getTile() {
+        return this.mTile;
+    }
+
+    private final ExecutorService getExecutorService() {
+        return this.mExecutorService;
+    }
+
+    private final List<Worker> getWorkers() {
+        return this.mWorkers;
+    }
+
+    private final AtomicInteger getCursor() {
+        return this.mCursor;
+    }
+
+}
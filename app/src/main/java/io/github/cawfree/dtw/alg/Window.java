@@ -0,0 +1,163 @@
+package io.github.cawfree.dtw.alg;
+
+import java.util.Arrays;
+
+/**
+ *  A global constraint on the warping path. For every index of the sample, a Window defines a contiguous range of the
+ *  template which the warping path may visit; cells outside of the range are never evaluated.
+ **/
+public abstract class Window {
+
+    /** Constrains the warping path to within an absolute number of template samples either side of the diagonal. (Sakoe-Chiba) */
+    public static Window sakoeChiba(final int pWidth) {
+        // Ensure the width is valid.
+        if(pWidth < 0) {
+            // Assert that the width is invalid.
+            throw new IllegalArgumentException("A Sakoe-Chiba band can't have a negative width, " + pWidth + ".");
+        }
+        // Return the Band.
+        return new Window() { @Override final void getBounds(final int pN, final int pM, final int[] pStart, final int[] pEnd) {
+            // Compute the band around the diagonal.
+            Window.getBand(pN, pM, pWidth, pStart, pEnd);
+        } };
+    }
+
+    /** Constrains the warping path to within a fraction of the template's length either side of the diagonal. (Sakoe-Chiba) */
+    public static Window sakoeChibaRelative(final float pFraction) {
+        // Ensure the fraction is valid.
+        if(!(pFraction >= 0.0f && pFraction <= 1.0f)) {
+            // Assert that the fraction is invalid.
+            throw new IllegalArgumentException("A relative Sakoe-Chiba band must lie between 0 and 1, not " + pFraction + ".");
+        }
+        // Return the Band.
+        return new Window() { @Override final void getBounds(final int pN, final int pM, final int[] pStart, final int[] pEnd) {
+            // Compute the band around the diagonal. (Scale the width by the length of the Template.)
+            Window.getBand(pN, pM, (int)Math.ceil(pFraction * pM), pStart, pEnd);
+        } };
+    }
+
+    /** Constrains the warping path to a parallelogram, whose sides have the given slope and its reciprocal. (Itakura) */
+    public static Window itakura(final float pSlope) {
+        // Ensure the slope is valid.
+        if(!(pSlope >= 1.0f)) {
+            // Assert that the slope is invalid.
+            throw new IllegalArgumentException("An Itakura parallelogram must have a slope of at least 1, not " + pSlope + ".");
+        }
+        // Return the Parallelogram.
+        return new Window() { @Override final void getBounds(final int pN, final int pM, final int[] pStart, final int[] pEnd) {
+            // Iterate the Sample.
+            for(int i = 0; i < pN; i++) {
+                // Compute the normalized position along the Sample.
+                final double lX     = (pN == 1) ? 0.0 : ((double)i / (pN - 1));
+                // Compute the edges of the parallelogram at this position.
+                final double lLower = Math.max(lX / pSlope, 1.0 - (pSlope * (1.0 - lX)));
+                final double lUpper = Math.min(lX * pSlope, 1.0 - ((1.0 - lX) / pSlope));
+                // Scale the edges onto the Template. (Allow for rounding error on cells which lie exactly on an edge.)
+                pStart[i] = (int)Math.ceil ((lLower * (pM - 1)) - Window.EPSILON);
+                pEnd[i]   = (int)Math.floor((lUpper * (pM - 1)) + Window.EPSILON);
+            }
+        } };
+    }
+
+    /** Constrains the warping path to explicit bounds for each index of the sample. The bounds are copied. */
+    static Window of(final int[] pStart, final int[] pEnd, final int pN) {
+        // Copy the Bounds.
+        final int[] lStart = Arrays.copyOf(pStart, pN);
+        final int[] lEnd   = Arrays.copyOf(pEnd,   pN);
+        // Return the Window.
+        return new Window() { @Override final void getBounds(final int pRows, final int pM, final int[] pRowStart, final int[] pRowEnd) {
+            // Ensure the Window is being applied to the sample it was made for.
+            if(pRows != pN) {
+                // Assert that the Window doesn't apply.
+                throw new IllegalArgumentException("This Window was defined for " + pN + " samples, not " + pRows + ".");
+            }
+            // Copy the Bounds.
+            System.arraycopy(lStart, 0, pRowStart, 0, pN);
+            System.arraycopy(lEnd,   0, pRowEnd,   0, pN);
+        } };
+    }
+
+    /* Rounding Tolerance. */
+    private static final double EPSILON = 1e-9;
+
+    /** Computes a band of the given width about the diagonal which joins the first and last cells. */
+    private static void getBand(final int pN, final int pM, final int pWidth, final int[] pStart, final int[] pEnd) {
+        // Iterate the Sample.
+        for(int i = 0; i < pN; i++) {
+            // Compute the position of the diagonal on the Template.
+            final double lCenter = (pN == 1) ? 0.0 : ((double)i * (pM - 1)) / (pN - 1);
+            // Update the bounds.
+            pStart[i] = (int)Math.ceil (lCenter - pWidth - Window.EPSILON);
+            pEnd[i]   = (int)Math.floor(lCenter + pWidth + Window.EPSILON);
+        }
+    }
+
+    /** Computes the bounds of each row of the Sample; without a Window, every row spans the whole Template. */
+    static void getRanges(final Window pWindow, final int pN, final int pM, final int[] pStart, final int[] pEnd) {
+        // Are we unconstrained?
+        if(pWindow == null) {
+            // Span the whole Template.
+            Arrays.fill(pStart, 0, pN, 0);
+            Arrays.fill(pEnd,   0, pN, pM - 1);
+        }
+        else {
+            // Delegate to the Window.
+            pWindow.getRanges(pN, pM, pStart, pEnd);
+        }
+    }
+
+    /** Transposes monotonic row bounds of an N x M window into the equivalent column bounds, each of which index the rows. */
+    static void transpose(final int pN, final int pM, final int[] pStart, final int[] pEnd, final int[] pColumnStart, final int[] pColumnEnd) {
+        // Declare the Row Pointers.
+        int lFirst = 0;
+        int lLast  = 0;
+        // Iterate the Columns.
+        for(int j = 0; j < pM; j++) {
+            // Seek the first row which reaches this column.
+            while(pEnd[lFirst] < j) {
+                lFirst++;
+            }
+            // Seek the last row which starts at or before this column.
+            while(lLast + 1 < pN && pStart[lLast + 1] <= j) {
+                lLast++;
+            }
+            // Update the bounds.
+            pColumnStart[j] = lFirst;
+            pColumnEnd[j]   = lLast;
+        }
+    }
+
+    /** Package-private constructor; Windows are created through the static factories. */
+    Window() { }
+
+    /** Writes the unrepaired bounds of the window for every index of an N-length sample against an M-length template. */
+    abstract void getBounds(final int pN, final int pM, final int[] pStart, final int[] pEnd);
+
+    /**
+     *  Writes the bounds of the window, guaranteeing that they are monotonic and that a warping path exists between the first
+     *  and last cells. Rounding can leave a narrow window disconnected; in that case the window is widened just enough to
+     *  join it back up.
+     **/
+    final void getRanges(final int pN, final int pM, final int[] pStart, final int[] pEnd) {
+        // Compute the Bounds.
+        this.getBounds(pN, pM, pStart, pEnd);
+        // Ensure the start of each row is monotonic, and begins at the origin.
+        for(int i = 0; i < pN; i++) {
+            // Clamp the start of the row.
+            pStart[i] = (i == 0) ? 0 : Math.min(pM - 1, Math.max(pStart[i], pStart[i - 1]));
+        }
+        // Ensure the end of each row is monotonic, finishes at the last cell, and overlaps with the row after it.
+        for(int i = pN - 1; i >= 0; i--) {
+            // Is this the last row?
+            if(i == pN - 1) {
+                // The path must reach the last cell.
+                pEnd[i] = pM - 1;
+            }
+            else {
+                // Clamp the end of the row. (Allow a diagonal step onto the start of the next row.)
+                pEnd[i] = Math.max(Math.max(Math.min(pEnd[i], pEnd[i + 1]), pStart[i]), pStart[i + 1] - 1);
+            }
+        }
+    }
+
+}
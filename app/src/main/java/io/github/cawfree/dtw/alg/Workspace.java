@@ -0,0 +1,101 @@
+package io.github.cawfree.dtw.alg;
+
+/**
+ *  Holds the flat, primitive scratch buffers used by a Dynamic Time Warping operation. Buffers only ever grow, so once a
+ *  Workspace has seen the largest problem it'll be asked to solve, subsequent operations allocate nothing.
+ *  A Workspace is not thread-safe; each thread should own its own.
+ **/
+public final class Workspace {
+
+    /* Double Slots. */
+    static final int SLOT_GLOBAL           = 0;
+    static final int SLOT_PREVIOUS         = 1;
+    static final int SLOT_CURRENT          = 2;
+    static final int SLOT_MINIMA           = 3;
+    static final int SLOT_COSTS            = 4;
+    static final int SLOT_DIAGONAL         = 5;
+    static final int COUNT_DOUBLES         = 6;
+
+    /* Integer Slots. */
+    static final int SLOT_LENGTH           = 0;
+    static final int SLOT_PREVIOUS_LENGTH  = 1;
+    static final int SLOT_CURRENT_LENGTH   = 2;
+    static final int SLOT_START            = 3;
+    static final int SLOT_END              = 4;
+    static final int SLOT_OFFSET           = 5;
+    static final int SLOT_COLUMN_START     = 6;
+    static final int SLOT_COLUMN_END       = 7;
+    static final int SLOT_DEQUE            = 8;
+    static final int SLOT_DIAGONAL_LENGTH  = 9;
+    static final int COUNT_INTS            = 10;
+
+    /* Float Slots. */
+    static final int SLOT_PROJECTION       = 0;
+    static final int SLOT_UPPER            = 1;
+    static final int SLOT_LOWER            = 2;
+    static final int SLOT_SINGLE_GLOBAL    = 3;
+    static final int SLOT_SINGLE_PREVIOUS  = 4;
+    static final int SLOT_SINGLE_CURRENT   = 5;
+    static final int COUNT_FLOATS          = 6;
+
+    /* Member Variables. */
+    private final double[][] mDoubles;
+    private final int[][]    mInts;
+    private final float[][]  mFloats;
+
+    /** Constructor. */
+    public Workspace() {
+        // Initialize Member Variables.
+        this.mDoubles = new double[Workspace.COUNT_DOUBLES][0];
+        this.mInts    = new int[Workspace.COUNT_INTS][0];
+        this.mFloats  = new float[Workspace.COUNT_FLOATS][0];
+    }
+
+    /** Returns the double buffer for the given slot, growing it so that it holds at least the requested number of elements. */
+    final double[] getDoubles(final int pSlot, final int pLength) {
+        // Fetch the existing Buffer.
+        final double[] lBuffer = this.mDoubles[pSlot];
+        // Is the Buffer already large enough?
+        if(lBuffer.length >= pLength) {
+            // Reuse the Buffer.
+            return lBuffer;
+        }
+        // Grow the Buffer. (Over-allocate, so that slowly increasing lengths don't reallocate every time.)
+        return (this.mDoubles[pSlot] = new double[Workspace.getCapacity(lBuffer.length, pLength)]);
+    }
+
+    /** Returns the integer buffer for the given slot, growing it so that it holds at least the requested number of elements. */
+    final int[] getInts(final int pSlot, final int pLength) {
+        // Fetch the existing Buffer.
+        final int[] lBuffer = this.mInts[pSlot];
+        // Is the Buffer already large enough?
+        if(lBuffer.length >= pLength) {
+            // Reuse the Buffer.
+            return lBuffer;
+        }
+        // Grow the Buffer.
+        return (this.mInts[pSlot] = new int[Workspace.getCapacity(lBuffer.length, pLength)]);
+    }
+
+    /** Returns the float buffer for the given slot, growing it so that it holds at least the requested number of elements. */
+    final float[] getFloats(final int pSlot, final int pLength) {
+        // Fetch the existing Buffer.
+        final float[] lBuffer = this.mFloats[pSlot];
+        // Is the Buffer already large enough?
+        if(lBuffer.length >= pLength) {
+            // Reuse the Buffer.
+            return lBuffer;
+        }
+        // Grow the Buffer.
+        return (this.mFloats[pSlot] = new float[Workspace.getCapacity(lBuffer.length, pLength)]);
+    }
+
+    /** Calculates the new capacity of a buffer which needs to hold the requested number of elements. */
+    private static int getCapacity(final int pCurrent, final int pRequested) {
+        // Double the current capacity, unless that still isn't enough. (Guard against overflow.)
+        final int lDoubled = pCurrent << 1;
+        // Return the Capacity.
+        return (lDoubled > pRequested) ? lDoubled : pRequested;
+    }
+
+}
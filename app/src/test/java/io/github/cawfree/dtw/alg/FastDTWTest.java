@@ -0,0 +1,103 @@
+package io.github.cawfree.dtw.alg;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *  Checks FastDTW against the exact engine. Errors are measured on the accumulated cost of each path, (its distance
+ *  multiplied by its length); FastDTW can only find a path at least as expensive as the optimum, but that path may be
+ *  longer, so its distance normalised by length is occasionally less than the exact one.
+ **/
+public final class FastDTWTest {
+
+    /* Test Constants. */
+    private static final int    COUNT_TRIALS   = 100;
+    private static final int    LENGTH_MINIMUM = 50;
+    private static final int    LENGTH_MAXIMUM = 450;
+    private static final double EPSILON        = 1e-9;
+
+    @Test
+    public final void radiusOneIsCloseToExact() {
+        // Measured at 7.0% on these series.
+        FastDTWTest.assertApproximation(1,  0.25);
+    }
+
+    @Test
+    public final void radiusTenIsCloseToExact() {
+        // Measured at 0.8% on these series.
+        FastDTWTest.assertApproximation(10, 0.03);
+    }
+
+    @Test
+    public final void radiusThirtyIsCloseToExact() {
+        // Measured at 0.1% on these series.
+        FastDTWTest.assertApproximation(30, 0.01);
+    }
+
+    @Test
+    public final void smallProblemsAreSolvedExactly() {
+        // Allocate the Engines.
+        final DTW     lDTW      = new DTW();
+        final FastDTW lFastDTW  = new FastDTW(30);
+        // Allocate the Random.
+        final Random  lRandom   = new Random(32);
+        // Allocate the Series. (The sample is short enough to be solved without coarsening.)
+        final float[] lSample   = FastDTWTest.getSeries(lRandom, 32);
+        final float[] lTemplate = FastDTWTest.getSeries(lRandom, 300);
+        // Assert that the distances are identical.
+        assertEquals("FastDTW coarsened a problem within its radius.", lDTW.getDistance(lSample, lTemplate), lFastDTW.getDistance(lSample, lTemplate), 0.0);
+    }
+
+    /** Asserts that FastDTW never beats the exact cost, and that its mean relative error stays within the given bound. */
+    private static void assertApproximation(final int pRadius, final double pBound) {
+        // Allocate the Engines.
+        final DTW     lDTW     = new DTW();
+        final FastDTW lFastDTW = new FastDTW(pRadius);
+        // Allocate the Random. (Seeded, so any failure is reproducible.)
+        final Random  lRandom  = new Random(pRadius);
+        // Declare the total Error.
+        double        lError   = 0.0;
+        // Iterate the Trials.
+        for(int i = 0; i < FastDTWTest.COUNT_TRIALS; i++) {
+            // Allocate the Series.
+            final float[]    lSample      = FastDTWTest.getSeries(lRandom, FastDTWTest.LENGTH_MINIMUM + lRandom.nextInt(FastDTWTest.LENGTH_MAXIMUM - FastDTWTest.LENGTH_MINIMUM));
+            final float[]    lTemplate    = FastDTWTest.getSeries(lRandom, FastDTWTest.LENGTH_MINIMUM + lRandom.nextInt(FastDTWTest.LENGTH_MAXIMUM - FastDTWTest.LENGTH_MINIMUM));
+            // Compute the exact and the approximate Results.
+            final DTW.Result lExact       = lDTW.compute(lSample, lTemplate);
+            final DTW.Result lApproximate = lFastDTW.compute(lSample, lTemplate);
+            // Fetch the accumulated Costs.
+            final double     lExactCost   = lExact.getDistance()       * lExact.getLength();
+            final double     lCost        = lApproximate.getDistance() * lApproximate.getLength();
+            // Assert that the approximate path is no cheaper than the optimal one.
+            assertTrue("FastDTW(" + pRadius + ") cost " + lCost + " beat the exact " + lExactCost + " (trial " + i + ")", lCost >= lExactCost * (1.0 - FastDTWTest.EPSILON));
+            // Accumulate the relative Error.
+            lError += (lCost - lExactCost) / lExactCost;
+        }
+        // Average the Error.
+        lError /= FastDTWTest.COUNT_TRIALS;
+        // Assert that the Error is bounded.
+        assertTrue("FastDTW(" + pRadius + ") mean relative error " + lError + " exceeds " + pBound, lError <= pBound);
+    }
+
+    /** Returns a random walk. */
+    private static float[] getSeries(final Random pRandom, final int pLength) {
+        // Allocate the Series.
+        final float[] lSeries = new float[pLength];
+        // Declare the Value.
+        float lValue = 0.0f;
+        // Iterate the Series.
+        for(int i = 0; i < pLength; i++) {
+            // Take a Step.
+            lValue    += (float)pRandom.nextGaussian();
+            // Assign the Value.
+            lSeries[i] = lValue;
+        }
+        // Return the Series.
+        return lSeries;
+    }
+
+}
@@ -0,0 +1,96 @@
+package io.github.cawfree.dtw.alg;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *  Measures the error of FloatDTW against the double engine, (see the error bounds of {@link FloatDTW}). The accumulated
+ *  cost is held to its bound; the normalized distance is only held to the ratio of the path lengths, and its worst error
+ *  is reported.
+ **/
+public final class FloatDTWTest {
+
+    /* Test Constants. */
+    private static final int    COUNT_TRIALS   = 3000;
+    private static final int    LENGTH_MAXIMUM = 64;
+    /** The unit roundoff of single precision. */
+    private static final double ROUNDOFF       = Math.pow(2.0, -24);
+    /** Allowance for the rounding of the double engine, and of the checks themselves. */
+    private static final double EPSILON        = 1e-12;
+
+    @Test
+    public final void errorIsBoundedAgainstCompute() {
+        // Check the unconstrained Window.
+        FloatDTWTest.assertError(null, "unconstrained", 18);
+    }
+
+    @Test
+    public final void errorIsBoundedAgainstWindowedCompute() {
+        // Check a Sakoe-Chiba band.
+        FloatDTWTest.assertError(Window.sakoeChiba(8), "Sakoe-Chiba(8)", 19);
+    }
+
+    /** Asserts the error bounds of FloatDTW on random pairs of Gaussian series, and reports the worst errors. */
+    private static void assertError(final Window pWindow, final String pName, final long pSeed) {
+        // Allocate the Engines.
+        final DTW      lDTW      = new DTW();
+        final FloatDTW lFloatDTW = new FloatDTW();
+        // Allocate the Random. (Seeded, so any failure is reproducible.)
+        final Random   lRandom   = new Random(pSeed);
+        // Declare the worst Errors, and the number of distances which differ.
+        double         lCost     = 0.0;
+        double         lDistance = 0.0;
+        int            lDiffer   = 0;
+        // Iterate the Trials.
+        for(int i = 0; i < FloatDTWTest.COUNT_TRIALS; i++) {
+            // Allocate the Series.
+            final float[]    lSample   = FloatDTWTest.getSeries(lRandom, 1 + lRandom.nextInt(FloatDTWTest.LENGTH_MAXIMUM));
+            final float[]    lTemplate = FloatDTWTest.getSeries(lRandom, 1 + lRandom.nextInt(FloatDTWTest.LENGTH_MAXIMUM));
+            // Fetch the longest possible path.
+            final int        lK        = (lSample.length + lTemplate.length) - 1;
+            // Compute the Results.
+            final DTW.Result lExact    = lDTW.compute(lSample, lTemplate, pWindow);
+            final DTW.Result lSingle   = lFloatDTW.compute(lSample, lTemplate, pWindow);
+            // Describe the Trial.
+            final String     lTrial    = "(" + lSample.length + " x " + lTemplate.length + ", trial " + i + ")";
+            // Assert that the rolling rows agree with the full matrix.
+            assertEquals("getDistance() disagrees with compute() " + lTrial, lSingle.getDistance(), lFloatDTW.getDistance(lSample, lTemplate, pWindow), 0.0);
+            // Compute the relative error of the accumulated Cost.
+            final double     lExactCost = lExact.getDistance() * lExact.getLength();
+            final double     lCostError = Math.abs((lSingle.getDistance() * lSingle.getLength()) - lExactCost) / lExactCost;
+            // Assert that the accumulated Cost lies within (1 + u)^(2K) - 1.
+            assertTrue("Accumulated cost error " + lCostError + " exceeds its bound " + lTrial, lCostError <= (Math.pow(1.0 + FloatDTWTest.ROUNDOFF, 2 * lK) - 1.0) + FloatDTWTest.EPSILON);
+            // Compute the ratio of the Distances.
+            final double     lRatio     = lSingle.getDistance() / lExact.getDistance();
+            // Fetch the range of path lengths.
+            final double     lLengths   = (double)lK / Math.max(lSample.length, lTemplate.length);
+            // Assert that the Distance differs by no more than the ratio of two path lengths. (Widened by the bound on the Cost.)
+            assertTrue("Distance ratio " + lRatio + " exceeds the ratio of path lengths " + lTrial, lRatio <= lLengths * (1.0 + lCostError + FloatDTWTest.EPSILON) && lRatio >= (1.0 - lCostError - FloatDTWTest.EPSILON) / lLengths);
+            // Track the worst Errors.
+            lCost     = Math.max(lCost,     lCostError);
+            lDistance = Math.max(lDistance, Math.abs(lRatio - 1.0));
+            // Count the Distances which differ.
+            lDiffer  += (Math.abs(lRatio - 1.0) > 1e-4) ? 1 : 0;
+        }
+        // Report the Errors.
+        System.out.println("FloatDTW against DTW.compute(), " + pName + ": worst accumulated cost error " + lCost + ", worst distance error " + lDistance + ", " + lDiffer + " of " + FloatDTWTest.COUNT_TRIALS + " distances differ by more than 0.01%.");
+    }
+
+    /** Returns a series of Gaussian noise. */
+    private static float[] getSeries(final Random pRandom, final int pLength) {
+        // Allocate the Series.
+        final float[] lSeries = new float[pLength];
+        // Iterate the Series.
+        for(int i = 0; i < pLength; i++) {
+            // Assign a random Value.
+            lSeries[i] = (float)pRandom.nextGaussian();
+        }
+        // Return the Series.
+        return lSeries;
+    }
+
+}
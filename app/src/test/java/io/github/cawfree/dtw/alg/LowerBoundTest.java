@@ -0,0 +1,99 @@
+package io.github.cawfree.dtw.alg;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ *  Checks that LB_Kim, LB_Keogh and LB_Improved never exceed the distance of getDistance() under the same Window.
+ *  LB_Kim only charges the corner cells, whilst LB_Keogh charges every row against the envelope, so neither one dominates
+ *  the other; LB_Improved is LB_Keogh plus a second, non-negative pass, so it is never less than LB_Keogh.
+ **/
+public final class LowerBoundTest {
+
+    /* Test Constants. */
+    private static final int    COUNT_TRIALS   = 2000;
+    private static final int    LENGTH_MAXIMUM = 80;
+    private static final double EPSILON        = 1e-9;
+
+    @Test
+    public final void boundsAreUnconstrainedLowerBounds() {
+        // Check the unconstrained Window.
+        LowerBoundTest.assertBounds(null, 1);
+    }
+
+    @Test
+    public final void boundsAreSakoeChibaLowerBounds() {
+        // Iterate the Widths.
+        for(final int lWidth : new int[]{ 0, 1, 5, 20 }) {
+            // Check the Window.
+            LowerBoundTest.assertBounds(Window.sakoeChiba(lWidth), lWidth);
+        }
+    }
+
+    @Test
+    public final void boundsAreRelativeSakoeChibaLowerBounds() {
+        // Iterate the Fractions.
+        for(final float lFraction : new float[]{ 0.1f, 0.5f }) {
+            // Check the Window.
+            LowerBoundTest.assertBounds(Window.sakoeChibaRelative(lFraction), Float.floatToIntBits(lFraction));
+        }
+    }
+
+    @Test
+    public final void boundsAreItakuraLowerBounds() {
+        // Iterate the Slopes.
+        for(final float lSlope : new float[]{ 2.0f, 3.0f }) {
+            // Check the Window.
+            LowerBoundTest.assertBounds(Window.itakura(lSlope), Float.floatToIntBits(lSlope));
+        }
+    }
+
+    /** Asserts that the bounds hold on random pairs of series, of random lengths, under the given Window. */
+    private static void assertBounds(final Window pWindow, final long pSeed) {
+        // Allocate the Engines.
+        final DTW        lDTW        = new DTW();
+        final LowerBound lLowerBound = new LowerBound(pWindow);
+        // Allocate the Random. (Seeded, so any failure is reproducible.)
+        final Random     lRandom     = new Random(pSeed);
+        // Iterate the Trials.
+        for(int i = 0; i < LowerBoundTest.COUNT_TRIALS; i++) {
+            // Allocate the Series. (Alternate between noise and random walks.)
+            final float[] lSample   = LowerBoundTest.getSeries(lRandom, 1 + lRandom.nextInt(LowerBoundTest.LENGTH_MAXIMUM), (i & 1) == 0);
+            final float[] lTemplate = LowerBoundTest.getSeries(lRandom, 1 + lRandom.nextInt(LowerBoundTest.LENGTH_MAXIMUM), (i & 1) == 0);
+            // Compute the Distance and its Bounds.
+            final double  lDistance = lDTW.getDistance(lSample, lTemplate, pWindow);
+            final double  lKim      = lLowerBound.getKim(lSample, lTemplate);
+            final double  lKeogh    = lLowerBound.getKeogh(lSample, lTemplate);
+            final double  lImproved = lLowerBound.getImproved(lSample, lTemplate);
+            // Declare the Tolerance.
+            final double  lEpsilon  = LowerBoundTest.EPSILON * Math.max(1.0, lImproved);
+            // Describe the Trial.
+            final String  lTrial    = "(" + lSample.length + " x " + lTemplate.length + ", trial " + i + ")";
+            // Assert that the bounds are ordered, and lie beneath the Distance.
+            assertTrue("LB_Kim "      + lKim      + " exceeds DTW "         + lDistance + " " + lTrial, lKim      <= lDistance + lEpsilon);
+            assertTrue("LB_Keogh "    + lKeogh    + " exceeds LB_Improved " + lImproved + " " + lTrial, lKeogh    <= lImproved + lEpsilon);
+            assertTrue("LB_Improved " + lImproved + " exceeds DTW "         + lDistance + " " + lTrial, lImproved <= lDistance + lEpsilon);
+        }
+    }
+
+    /** Returns a random series; either white noise, or a random walk. */
+    private static float[] getSeries(final Random pRandom, final int pLength, final boolean pIsWalk) {
+        // Allocate the Series.
+        final float[] lSeries = new float[pLength];
+        // Declare the Value.
+        float lValue = 0.0f;
+        // Iterate the Series.
+        for(int i = 0; i < pLength; i++) {
+            // Draw the next Value.
+            lValue     = (pIsWalk ? lValue : 0.0f) + (float)pRandom.nextGaussian();
+            // Assign the Value.
+            lSeries[i] = lValue;
+        }
+        // Return the Series.
+        return lSeries;
+    }
+
+}
@@ -0,0 +1,149 @@
+package io.github.cawfree.dtw.alg;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ *  Checks that an interrupted append, however it's left on disk, is ignored and overwritten, whilst damage which is
+ *  followed by an intact template still fails the store.
+ **/
+public final class TemplateStoreTest {
+
+    /* Member Variables. */
+    private File mFile;
+
+    @Before
+    public final void setUp() throws IOException {
+        // Allocate the File.
+        this.mFile = File.createTempFile("store", ".dtwt");
+        // Write a store of two templates.
+        this.append("a", new float[]{ 1, 2, 3, 4, 5, 6 });
+        this.append("b", new float[]{ 6, 5, 4, 3, 2, 1 });
+    }
+
+    @After
+    public final void tearDown() {
+        // Delete the File.
+        this.mFile.delete();
+    }
+
+    @Test
+    public final void zeroFilledTailIsIgnored() throws IOException {
+        // Fetch the end of the intact Records.
+        final long lEnd = this.mFile.length();
+        // Leave a page of zeros behind, as if the file was extended but never written.
+        this.write(lEnd, new byte[4096]);
+        // Assert that the zeros are ignored, even without verifying.
+        assertEquals(2, TemplateStore.map(this.mFile, false).size());
+        // Assert that the store can still be read, and appended to.
+        this.assertRecovers(lEnd);
+    }
+
+    @Test
+    public final void checksumFailingTailIsIgnored() throws IOException {
+        // Fetch the end of the intact Records.
+        final long lEnd = this.mFile.length();
+        // Append a third template.
+        this.append("c", new float[]{ 7, 8, 9 });
+        // Garble its last value, as if only part of it reached the disk.
+        this.write(this.mFile.length() - 1, new byte[]{ 0x7F });
+        // Assert that the store can still be read, and appended to.
+        this.assertRecovers(lEnd);
+    }
+
+    @Test
+    public final void damageBeforeAnIntactTemplateFails() throws IOException {
+        // Zero the length of the first template, which is followed by the second.
+        this.write(16, new byte[4]);
+        // Assert that the store fails, whether or not it's verified.
+        this.assertCorrupt(false);
+        this.assertCorrupt(true);
+    }
+
+    @Test
+    public final void checksumFailureBeforeAnIntactTemplateFails() throws IOException {
+        // Garble the first value of the first template, which is followed by the second.
+        this.write(16 + 8 + 8 + 4, new byte[]{ 0x7F });
+        // Assert that only a verified mapping notices.
+        assertEquals(2, TemplateStore.map(this.mFile, false).size());
+        this.assertCorrupt(true);
+    }
+
+    /** Asserts that the store holds the two original templates, and that the next append overwrites the damage at the given offset. */
+    private void assertRecovers(final long pEnd) throws IOException {
+        // Assert that the damaged Record is ignored.
+        assertEquals(2, TemplateStore.map(this.mFile, true).size());
+        // Append a template over the damage.
+        this.append("d", new float[]{ 1, 1, 1 });
+        // Fetch the Store.
+        final TemplateStore lStore = TemplateStore.map(this.mFile, true);
+        // Assert that the template replaced the damage.
+        assertEquals(3, lStore.size());
+        assertEquals("d", lStore.getLabel(2));
+        assertEquals(lStore.getEnd(), this.mFile.length());
+        // Assert that it was written where the damage began. (Its header, frames and label length, padded label, values and statistics.)
+        assertEquals(pEnd + 8 + 8 + 4 + (4 * 3) + (4 * 4 * 3), this.mFile.length());
+    }
+
+    /** Asserts that the store can be neither mapped nor appended to. */
+    private void assertCorrupt(final boolean pIsVerified) {
+        try {
+            // Map the Store.
+            TemplateStore.map(this.mFile, pIsVerified);
+            // Assert that the damage went unnoticed.
+            fail("A damaged template followed by an intact one was ignored.");
+        }
+        catch(final IOException pIOException) {
+            // Assert that the store was rejected.
+            assertTrue(pIOException.getMessage(), pIOException.getMessage().contains("byte 16"));
+        }
+        try {
+            // Open the Store for appending.
+            new TemplateStore.Writer(this.mFile, 3, TemplateStore.BAND_NONE).close();
+            // Assert that the damage went unnoticed.
+            fail("A Writer opened a store with a damaged template followed by an intact one.");
+        }
+        catch(final IOException pIOException) {
+            // The Writer refused the store.
+        }
+    }
+
+    /** Appends a template of three dimensions to the store. */
+    private void append(final String pLabel, final float[] pTemplate) throws IOException {
+        // Open the Store.
+        final TemplateStore.Writer lWriter = new TemplateStore.Writer(this.mFile, 3, TemplateStore.BAND_NONE);
+        try {
+            // Append the Template.
+            lWriter.append(pLabel, pTemplate);
+        }
+        finally {
+            // Close the Store.
+            lWriter.close();
+        }
+    }
+
+    /** Overwrites bytes of the file at the given offset, extending it if need be. */
+    private void write(final long pOffset, final byte[] pBytes) throws IOException {
+        // Open the File.
+        final RandomAccessFile lFile = new RandomAccessFile(this.mFile, "rw");
+        try {
+            // Write the Bytes.
+            lFile.seek(pOffset);
+            lFile.write(pBytes);
+        }
+        finally {
+            // Close the File.
+            lFile.close();
+        }
+    }
+
+}
@@ -0,0 +1,120 @@
+package io.github.cawfree.dtw.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+
+import io.github.cawfree.dtw.alg.DTW;
+import io.github.cawfree.dtw.alg.Window;
+
+/**
+ *  Measures the DTW engine across lengths, shapes and modes. Run with `./gradlew :benchmark:jmh`; throughput, average
+ *  latency and the GC profiler's allocation rate per operation are reported for every combination of parameters.
+ **/
+@State(Scope.Thread)
+public class DTWBenchmark {
+
+    /** Defines the shape of the generated series. */
+    public enum EShape {
+        /** A sine wave against a time-warped copy of itself; the path hugs a curve away from the diagonal. */
+        SINE,
+        /** Two independent random walks; the path wanders. */
+        WALK,
+        /** Two independent series of uniform noise; many ties, and no useful alignment. */
+        NOISE
+    }
+
+    /** Defines how the engine is driven. */
+    public enum EMode {
+        /** Computes the warping path and the distance. */
+        COMPUTE,
+        /** Computes the warping path and the distance, inside of a Sakoe-Chiba band. */
+        COMPUTE_WINDOWED,
+        /** Computes the distance, using rolling rows. */
+        DISTANCE,
+        /** Computes the distance, using rolling rows inside of a Sakoe-Chiba band. */
+        DISTANCE_WINDOWED,
+        /** Computes the distance, using rolling anti-diagonals. */
+        DISTANCE_DIAGONALS,
+        /** Computes the distance against a cutoff of a tenth of the true distance, so most operations abandon part of the way through. */
+        DISTANCE_ABANDONED
+    }
+
+    /* Parameters. */
+    @Param({ "64", "256", "1024", "4096" }) public int    mLength;
+    @Param({ "1", "3" })                    public int    mDimensions;
+    @Param({ "SINE", "WALK", "NOISE" })     public EShape mShape;
+    @Param({ "COMPUTE", "COMPUTE_WINDOWED", "DISTANCE", "DISTANCE_WINDOWED", "DISTANCE_DIAGONALS", "DISTANCE_ABANDONED" })
+                                            public EMode  mMode;
+
+    /* Member Variables. */
+    private float[] mSample;
+    private float[] mTemplate;
+    private DTW     mDTW;
+    private Window  mWindow;
+    private double  mCutoff;
+
+    /** Generates the series, and warms the Workspace up to the size of the problem. */
+    @Setup public final void onSetup() {
+        // Use a fixed seed, so that every run measures the same series.
+        final Random lRandom = new Random(0x5EED);
+        // Generate the Series. (The template is a little shorter, so the path isn't square.)
+        this.mSample   = DTWBenchmark.getSeries(this.mShape, this.mLength,                this.mDimensions, 1.0, lRandom);
+        this.mTemplate = DTWBenchmark.getSeries(this.mShape, (this.mLength * 7) / 8, this.mDimensions, 1.3, lRandom);
+        // Allocate the DTW.
+        this.mDTW      = new DTW(this.mDimensions);
+        this.mWindow   = Window.sakoeChibaRelative(0.1f);
+        // Are we sweeping anti-diagonals?
+        if(this.mMode == EMode.DISTANCE_DIAGONALS) {
+            // Switch the kernel.
+            this.mDTW.setKernel(DTW.EKernel.DIAGONALS);
+        }
+        // Abandon at a tenth of the true distance.
+        this.mCutoff   = this.mDTW.getDistance(this.mSample, this.mTemplate) * 0.1;
+        // Grow the Workspace, so that steady-state allocation is measured.
+        this.mDTW.compute(this.mSample, this.mTemplate);
+    }
+
+    /** Runs the configured mode once. */
+    @Benchmark public final void onBenchmark(final Blackhole pBlackhole) {
+        // Handle the Mode. (Results are sunk into the Blackhole, so that the work can't be eliminated; distances are consumed as primitives, so they aren't boxed.)
+        switch(this.mMode) {
+            case COMPUTE            : pBlackhole.consume(this.mDTW.compute(this.mSample, this.mTemplate));                      return;
+            case COMPUTE_WINDOWED   : pBlackhole.consume(this.mDTW.compute(this.mSample, this.mTemplate, this.mWindow));        return;
+            case DISTANCE           :
+            case DISTANCE_DIAGONALS : pBlackhole.consume(this.mDTW.getDistance(this.mSample, this.mTemplate));                  return;
+            case DISTANCE_WINDOWED  : pBlackhole.consume(this.mDTW.getDistance(this.mSample, this.mTemplate, this.mWindow));    return;
+            case DISTANCE_ABANDONED : pBlackhole.consume(this.mDTW.getDistance(this.mSample, this.mTemplate, this.mCutoff));    return;
+        }
+        // Assert that the mode is unsupported.
+        throw new IllegalStateException("Unsupported mode, " + this.mMode + ".");
+    }
+
+    /** Generates a series of interleaved frames, of the given shape. The rate stretches the sine, to warp it in time. */
+    private static float[] getSeries(final EShape pShape, final int pLength, final int pDimensions, final double pRate, final Random pRandom) {
+        // Allocate the Series.
+        final float[] lSeries = new float[pLength * pDimensions];
+        // Iterate the Dimensions.
+        for(int d = 0; d < pDimensions; d++) {
+            // Declare the position of the walk.
+            double lWalk = 0.0;
+            // Iterate the Frames.
+            for(int i = 0; i < pLength; i++) {
+                // Handle the Shape.
+                switch(pShape) {
+                    case SINE  : lSeries[(i * pDimensions) + d] = (float)Math.sin((((i * pRate) + d) * Math.PI * 8.0) / pLength); break;
+                    case WALK  : lSeries[(i * pDimensions) + d] = (float)(lWalk += pRandom.nextGaussian());                        break;
+                    case NOISE : lSeries[(i * pDimensions) + d] = pRandom.nextFloat();                                             break;
+                }
+            }
+        }
+        // Return the Series.
+        return lSeries;
+    }
+
+}
@@ -0,0 +1,165 @@
+package io.github.cawfree.dtw.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ *  A read-only, memory-mapped file of recordings. Each recording is a little-endian int32 count of frames, followed by
+ *  that many frames of little-endian float32 values, interleaved across the dimensions. The file is mapped in segments
+ *  which begin on recording boundaries, so files larger than a single mapping are supported, and the pages are shared
+ *  with the operating system's cache rather than read onto the heap.
+ **/
+public final class Recordings {
+
+    /** The largest number of bytes mapped at once. */
+    private static final long SIZE_SEGMENT = Integer.MAX_VALUE;
+
+    /** Maps a file of recordings, whose frames have the given number of dimensions. */
+    public static Recordings map(final File pFile, final int pDimensions) throws IOException {
+        // Open the File.
+        final RandomAccessFile lFile = new RandomAccessFile(pFile, "r");
+        try {
+            // Fetch the Channel.
+            final FileChannel lChannel = lFile.getChannel();
+            // Fetch the size of the File.
+            final long        lSize    = lChannel.size();
+            // Allocate the Recordings.
+            final Recordings  lRecordings = new Recordings(pDimensions);
+            // Declare the position of the current Segment, and of the current Recording.
+                  long        lStart   = 0;
+                  long        lOffset  = 0;
+                  ByteBuffer  lSegment = null;
+            // Whilst there are recordings to index...
+            while(lOffset < lSize) {
+                // Does the Recording lie beyond the current Segment?
+                if(lSegment == null || !Recordings.isContained(lSegment, lOffset - lStart, 4) || !Recordings.isContained(lSegment, lOffset - lStart, Recordings.getBytes(lSegment.getInt((int)(lOffset - lStart)), pDimensions))) {
+                    // Ensure that we'll make progress.
+                    if(lSegment != null && lStart == lOffset) {
+                        // Assert that the file is corrupt.
+                        throw new IOException("The recording at byte " + lOffset + " of " + pFile + " is truncated.");
+                    }
+                    // Begin a new Segment at this Recording.
+                    lStart   = lOffset;
+                    lSegment = lChannel.map(FileChannel.MapMode.READ_ONLY, lStart, Math.min(Recordings.SIZE_SEGMENT, lSize - lStart)).order(ByteOrder.LITTLE_ENDIAN);
+                    lRecordings.mSegments.add(lSegment);
+                    continue;
+                }
+                // Fetch the number of Frames.
+                final int lFrames = lSegment.getInt((int)(lOffset - lStart));
+                // Index the Recording.
+                lRecordings.add(lRecordings.mSegments.size() - 1, (int)(lOffset - lStart) + 4, lFrames);
+                // Move onto the next Recording.
+                lOffset += Recordings.getBytes(lFrames, pDimensions);
+            }
+            // Return the Recordings. (Mappings remain valid once the file has been closed.)
+            return lRecordings;
+        }
+        finally {
+            // Close the File.
+            lFile.close();
+        }
+    }
+
+    /** Computes the number of bytes occupied by a recording, including its header. */
+    private static long getBytes(final int pFrames, final int pDimensions) {
+        // Ensure the header is valid.
+        if(pFrames < 0) {
+            // Treat the recording as unreadable.
+            return Long.MAX_VALUE;
+        }
+        // Count the header and the values.
+        return 4L + ((long)pFrames * pDimensions * 4L);
+    }
+
+    /** Determines whether a number of bytes, from the given position, lie within a segment. */
+    private static boolean isContained(final ByteBuffer pSegment, final long pPosition, final long pBytes) {
+        // Compare against the end of the Segment.
+        return pBytes <= pSegment.capacity() - pPosition;
+    }
+
+    /* Member Variables. */
+    private final int              mDimensions;
+    private final List<ByteBuffer> mSegments;
+    private       int[]            mSegment;
+    private       int[]            mOffset;
+    private       int[]            mFrames;
+    private       int              mCount;
+
+    /** Constructor. Recordings are created by mapping a file. */
+    private Recordings(final int pDimensions) {
+        // Ensure the dimensions are valid.
+        if(pDimensions < 1) {
+            // Assert that the dimensions are invalid.
+            throw new IllegalArgumentException("A recording must have at least one dimension, not " + pDimensions + ".");
+        }
+        // Initialize Member Variables.
+        this.mDimensions = pDimensions;
+        this.mSegments   = new ArrayList<>();
+        this.mSegment    = new int[16];
+        this.mOffset     = new int[16];
+        this.mFrames     = new int[16];
+        this.mCount      = 0;
+    }
+
+    /** Indexes a recording. */
+    private void add(final int pSegment, final int pOffset, final int pFrames) {
+        // Is the index full?
+        if(this.mCount == this.mFrames.length) {
+            // Grow the index.
+            this.mSegment = Arrays.copyOf(this.mSegment, this.mCount << 1);
+            this.mOffset  = Arrays.copyOf(this.mOffset,  this.mCount << 1);
+            this.mFrames  = Arrays.copyOf(this.mFrames,  this.mCount << 1);
+        }
+        // Buffer the Recording.
+        this.mSegment[this.mCount] = pSegment;
+        this.mOffset[this.mCount]  = pOffset;
+        this.mFrames[this.mCount]  = pFrames;
+        // Count the Recording.
+        this.mCount++;
+    }
+
+    /** Returns a view of the values of a recording, straight onto the mapped pages. Views are independent, so are safe to share. */
+    public final FloatBuffer getBuffer(final int pIndex) {
+        // Duplicate the Segment, so that positions aren't shared between threads.
+        final ByteBuffer lSegment = this.mSegments.get(this.mSegment[pIndex]).duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        // Select the Recording.
+        lSegment.position(this.mOffset[pIndex]);
+        lSegment.limit(this.mOffset[pIndex] + (this.getLength(pIndex) * 4));
+        // Return the View.
+        return lSegment.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+    }
+
+    /** Bulk-copies the values of a recording into an array of exactly {@link #getLength(int)} values. */
+    public final float[] get(final int pIndex, final float[] pValues) {
+        // Copy the Values.
+        this.getBuffer(pIndex).get(pValues);
+        // Return the Values.
+        return pValues;
+    }
+
+    /* Getters. */
+    public final int getDimensions() {
+        return this.mDimensions;
+    }
+
+    public final int size() {
+        return this.mCount;
+    }
+
+    public final int getFrames(final int pIndex) {
+        return this.mFrames[pIndex];
+    }
+
+    public final int getLength(final int pIndex) {
+        return this.mFrames[pIndex] * this.getDimensions();
+    }
+
+}
@@ -0,0 +1,250 @@
+package io.github.cawfree.dtw.tools;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.github.cawfree.dtw.alg.DTW;
+import io.github.cawfree.dtw.alg.Window;
+
+/**
+ *  Scores every recording of a query file against every recording of a template file, without the app.
+ *
+ *  Both files are memory-mapped, (see {@link Recordings}). Queries are claimed in blocks by a fixed pool of workers;
+ *  each worker owns its DTW, its Workspace and one reusable array per recording length, so after warm-up a query is
+ *  bulk-copied straight from the mapped pages and scored without allocating. Each query produces one tab-separated
+ *  line; its index, followed by its distance to each template. Lines are streamed out as blocks complete, so they may
+ *  arrive out of order.
+ *
+ *  Usage: Score [-d dimensions] [-w band] [-c cutoff] [-t threads] [-o output] templates queries
+ **/
+public final class Score {
+
+    /** The number of queries claimed by a worker at once. */
+    private static final int SIZE_BLOCK = 256;
+
+    /** Scores the blocks of queries claimed by a single worker. */
+    private final class Worker implements Callable<Void> {
+        /* Member Variables. */
+        private final DTW           mDTW;
+        private final StringBuilder mStringBuilder;
+        private       float[][]     mBuffers;
+        /** Constructor. */
+        private Worker() {
+            // Initialize Member Variables.
+            this.mDTW           = new DTW(Score.this.getQueries().getDimensions());
+            this.mStringBuilder = new StringBuilder();
+            this.mBuffers       = new float[0][];
+        }
+        /** Claims blocks until there are none left to score. */
+        @Override public final Void call() throws IOException {
+            // Declare the first query of the claimed Block.
+            int lFirst;
+            // Whilst there are blocks to claim...
+            while((lFirst = Score.this.getCursor().getAndAdd(Score.SIZE_BLOCK)) < Score.this.getQueries().size()) {
+                // Reset the Output.
+                this.mStringBuilder.setLength(0);
+                // Iterate the Block.
+                for(int i = lFirst; i < Math.min(lFirst + Score.SIZE_BLOCK, Score.this.getQueries().size()); i++) {
+                    // Fetch the Query.
+                    final float[] lQuery = Score.this.getQueries().get(i, this.getBuffer(Score.this.getQueries().getFrames(i)));
+                    // Print the index of the Query.
+                    this.mStringBuilder.append(i);
+                    // Iterate the Templates.
+                    for(final float[] lTemplate : Score.this.getTemplates()) {
+                        // Print the Distance.
+                        this.mStringBuilder.append('\t').append(this.mDTW.getDistance(lQuery, lTemplate, Score.this.getWindow(), Score.this.getCutoff()));
+                    }
+                    // Terminate the Line.
+                    this.mStringBuilder.append('\n');
+                }
+                // Synchronize on the Writer.
+                synchronized(Score.this.getWriter()) {
+                    // Stream the Block.
+                    Score.this.getWriter().append(this.mStringBuilder);
+                }
+            }
+            // Satisfy the compiler.
+            return null;
+        }
+        /** Returns this worker's array for recordings of the given number of frames. (The DTW measures series by their length.) */
+        private float[] getBuffer(final int pFrames) {
+            // Have we seen a recording this long before?
+            if(pFrames >= this.mBuffers.length) {
+                // Grow the Buffers.
+                final float[][] lBuffers = new float[Math.max(pFrames + 1, this.mBuffers.length << 1)][];
+                // Copy the existing Buffers.
+                System.arraycopy(this.mBuffers, 0, lBuffers, 0, this.mBuffers.length);
+                // Assign the Buffers.
+                this.mBuffers = lBuffers;
+            }
+            // Allocate the Buffer, if necessary.
+            if(this.mBuffers[pFrames] == null) {
+                this.mBuffers[pFrames] = new float[pFrames * Score.this.getQueries().getDimensions()];
+            }
+            // Return the Buffer.
+            return this.mBuffers[pFrames];
+        }
+    }
+
+    /** Entry point. */
+    public static void main(final String[] pArguments) throws IOException, InterruptedException {
+        // Declare the Options.
+        int    lDimensions = 3;
+        Window lWindow     = null;
+        double lCutoff     = DTW.ABANDONED;
+        int    lThreads    = Runtime.getRuntime().availableProcessors();
+        File   lOutput     = null;
+        // Declare the Files.
+        final List<File> lFiles = new ArrayList<>();
+        try {
+            // Iterate the Arguments.
+            for(int i = 0; i < pArguments.length; i++) {
+                // Handle the Argument.
+                switch(pArguments[i]) {
+                    case "-d" : lDimensions = Integer.parseInt(pArguments[++i]);                           break;
+                    case "-w" : lWindow     = Window.sakoeChibaRelative(Float.parseFloat(pArguments[++i])); break;
+                    case "-c" : lCutoff     = Double.parseDouble(pArguments[++i]);                         break;
+                    case "-t" : lThreads    = Integer.parseInt(pArguments[++i]);                           break;
+                    case "-o" : lOutput     = new File(pArguments[++i]);                                   break;
+                    default   : lFiles.add(new File(pArguments[i]));                                       break;
+                }
+            }
+            // Ensure we've been given a template file and a query file.
+            if(lFiles.size() != 2) {
+                // Assert that the arguments are invalid.
+                throw new IllegalArgumentException("Expected a template file and a query file.");
+            }
+        }
+        catch(final RuntimeException pRuntimeException) {
+            // Print the Usage.
+            System.err.println(pRuntimeException.getMessage());
+            System.err.println("Usage: Score [-d dimensions] [-w band] [-c cutoff] [-t threads] [-o output] templates queries");
+            // Exit.
+            System.exit(2);
+            return;
+        }
+        // Map the Files.
+        final Recordings lTemplates = Recordings.map(lFiles.get(0), lDimensions);
+        final Recordings lQueries   = Recordings.map(lFiles.get(1), lDimensions);
+        // Allocate the Writer.
+        final Writer     lWriter    = new BufferedWriter(new OutputStreamWriter((lOutput == null) ? System.out : new FileOutputStream(lOutput), "UTF-8"), 1 << 16);
+        try {
+            // Score the Queries.
+            new Score(lTemplates, lQueries, lWindow, lCutoff, lWriter).run(lThreads);
+        }
+        finally {
+            // Flush the Output.
+            lWriter.close();
+        }
+    }
+
+    /* Member Variables. */
+    private final List<float[]> mTemplates;
+    private final Recordings    mQueries;
+    private final Window        mWindow;
+    private final double        mCutoff;
+    private final Writer        mWriter;
+    private final AtomicInteger mCursor;
+
+    /** Constructor. Templates are few, so they're copied onto the heap once; queries are read from the mapping as they're scored. */
+    public Score(final Recordings pTemplates, final Recordings pQueries, final Window pWindow, final double pCutoff, final Writer pWriter) {
+        // Ensure the recordings are compatible.
+        if(pTemplates.getDimensions() != pQueries.getDimensions()) {
+            // Assert that the recordings are incompatible.
+            throw new IllegalArgumentException("Templates of " + pTemplates.getDimensions() + " dimensions can't score queries of " + pQueries.getDimensions() + ".");
+        }
+        // Initialize Member Variables.
+        this.mTemplates = new ArrayList<>(pTemplates.size());
+        this.mQueries   = pQueries;
+        this.mWindow    = pWindow;
+        this.mCutoff    = pCutoff;
+        this.mWriter    = pWriter;
+        this.mCursor    = new AtomicInteger();
+        // Iterate the Templates.
+        for(int i = 0; i < pTemplates.size(); i++) {
+            // Copy the Template.
+            this.mTemplates.add(pTemplates.get(i, new float[pTemplates.getLength(i)]));
+        }
+    }
+
+    /** Scores every query across the given number of threads. */
+    public final void run(final int pThreads) throws IOException, InterruptedException {
+        // Ensure the parallelism is valid.
+        if(pThreads < 1) {
+            // Assert that the parallelism is invalid.
+            throw new IllegalArgumentException("Scoring needs at least one thread, not " + pThreads + ".");
+        }
+        // Allocate the Workers.
+        final List<Worker>    lWorkers         = new ArrayList<>(pThreads);
+        for(int i = 0; i < pThreads; i++) {
+            // Buffer a Worker.
+            lWorkers.add(new Worker());
+        }
+        // Allocate the ExecutorService.
+        final ExecutorService lExecutorService = Executors.newFixedThreadPool(pThreads);
+        try {
+            // Reset the Cursor.
+            this.getCursor().set(0);
+            // Score the Queries.
+            final List<Future<Void>> lFutures = lExecutorService.invokeAll(lWorkers);
+            // Iterate the Futures.
+            for(final Future<Void> lFuture : lFutures) {
+                try {
+                    // Propagate any failures.
+                    lFuture.get();
+                }
+                catch(final ExecutionException pExecutionException) {
+                    // Is the cause an IOException?
+                    if(pExecutionException.getCause() instanceof IOException) {
+                        // Rethrow the cause.
+                        throw (IOException)pExecutionException.getCause();
+                    }
+                    // Rethrow the cause.
+                    throw new IllegalStateException("Failed to score a query.", pExecutionException.getCause());
+                }
+            }
+        }
+        finally {
+            // Release the Workers.
+            lExecutorService.shutdown();
+        }
+    }
+
+    /* Getters. */
+    private final List<float[]> getTemplates() {
+        return this.mTemplates;
+    }
+
+    private final Recordings getQueries() {
+        return this.mQueries;
+    }
+
+    private final Window getWindow() {
+        return this.mWindow;
+    }
+
+    private final double getCutoff() {
+        return this.mCutoff;
+    }
+
+    private final Writer getWriter() {
+        return this.mWriter;
+    }
+
+    private final AtomicInteger getCursor() {
+        return this.mCursor;
+    }
+
+}
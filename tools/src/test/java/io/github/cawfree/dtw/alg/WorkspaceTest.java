@@ -0,0 +1,176 @@
+package io.github.cawfree.dtw.alg;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *  Checks that a warmed-up DTW takes all of its scratch memory from its Workspace. Allocations are counted per thread
+ *  using the HotSpot ThreadMXBean, so the test is skipped on JVMs which don't support it. (It lives in the tools module,
+ *  since java.lang.management isn't part of android.jar.)
+ **/
+public final class WorkspaceTest {
+
+    /* Test Constants. */
+    private static final int  LENGTH_SAMPLE     = 300;
+    private static final int  LENGTH_TEMPLATE   = 250;
+    private static final int  COUNT_WARM_UP     = 50;
+    private static final int  COUNT_ITERATIONS  = 200;
+    private static final int  COUNT_ROUNDS      = 5;
+    /** Allowance for the Result object and the array header of its path. */
+    private static final long SLACK_RESULT      = 256;
+
+    /* Member Variables. */
+    private com.sun.management.ThreadMXBean mThreadMXBean;
+    private long                            mOverhead;
+    private float[]                         mSample;
+    private float[]                         mTemplate;
+    private float[]                         mSample3;
+    private float[]                         mTemplate3;
+
+    @Before
+    public final void setUp() {
+        // Fetch the ThreadMXBean.
+        final java.lang.management.ThreadMXBean lThreadMXBean = ManagementFactory.getThreadMXBean();
+        // Can we count the allocations of a thread?
+        Assume.assumeTrue("Thread allocation counting is unsupported.", (lThreadMXBean instanceof com.sun.management.ThreadMXBean) && ((com.sun.management.ThreadMXBean)lThreadMXBean).isThreadAllocatedMemorySupported());
+        // Initialize Member Variables.
+        this.mThreadMXBean = (com.sun.management.ThreadMXBean)lThreadMXBean;
+        this.mThreadMXBean.setThreadAllocatedMemoryEnabled(true);
+        this.mOverhead     = this.getOverhead();
+        // Allocate the Series.
+        final Random lRandom = new Random(2);
+        this.mSample         = WorkspaceTest.getSeries(lRandom, WorkspaceTest.LENGTH_SAMPLE);
+        this.mTemplate       = WorkspaceTest.getSeries(lRandom, WorkspaceTest.LENGTH_TEMPLATE);
+        this.mSample3        = WorkspaceTest.getSeries(lRandom, WorkspaceTest.LENGTH_SAMPLE   * 3);
+        this.mTemplate3      = WorkspaceTest.getSeries(lRandom, WorkspaceTest.LENGTH_TEMPLATE * 3);
+    }
+
+    @Test
+    public final void getDistanceAllocatesNothing() {
+        // Allocate the DTW.
+        final DTW lDTW = new DTW();
+        // Assert that every flavour of getDistance() is allocation-free.
+        assertEquals("Unconstrained getDistance() allocated.", 0, this.getAllocatedBytes(lDTW, this.mSample, this.mTemplate, null,                    Double.POSITIVE_INFINITY));
+        assertEquals("Windowed getDistance() allocated.",      0, this.getAllocatedBytes(lDTW, this.mSample, this.mTemplate, Window.sakoeChiba(20),  Double.POSITIVE_INFINITY));
+        assertEquals("Cutoff getDistance() allocated.",        0, this.getAllocatedBytes(lDTW, this.mSample, this.mTemplate, null,                    lDTW.getDistance(this.mSample, this.mTemplate) * 0.5));
+    }
+
+    @Test
+    public final void getDistanceAllocatesNothingAcrossKernels() {
+        // Allocate the DTW.
+        final DTW lDTW = new DTW();
+        // Sweep by anti-diagonals.
+        lDTW.setKernel(DTW.EKernel.DIAGONALS);
+        // Assert that the diagonal kernel is allocation-free.
+        assertEquals("Diagonal getDistance() allocated.", 0, this.getAllocatedBytes(lDTW, this.mSample, this.mTemplate, null, Double.POSITIVE_INFINITY));
+    }
+
+    @Test
+    public final void getDistanceAllocatesNothingForMultivariateSeries() {
+        // Allocate a three-dimensional DTW.
+        final DTW lDTW = new DTW(3);
+        // Assert that multivariate getDistance() is allocation-free.
+        assertEquals("Multivariate getDistance() allocated.",          0, this.getAllocatedBytes(lDTW, this.mSample3, this.mTemplate3, null,                   Double.POSITIVE_INFINITY));
+        assertEquals("Multivariate windowed getDistance() allocated.", 0, this.getAllocatedBytes(lDTW, this.mSample3, this.mTemplate3, Window.sakoeChiba(20), Double.POSITIVE_INFINITY));
+    }
+
+    @Test
+    public final void computeAllocatesOnlyItsResult() {
+        // Allocate the DTW.
+        final DTW lDTW = new DTW();
+        // Warm up the Workspace.
+        for(int i = 0; i < WorkspaceTest.COUNT_WARM_UP; i++) {
+            // Compute the Result.
+            lDTW.compute(this.mSample, this.mTemplate);
+        }
+        // Declare the Bytes beyond the Result's path.
+        long lExcess = Long.MAX_VALUE;
+        // Iterate the Rounds.
+        for(int i = 0; i < WorkspaceTest.COUNT_ROUNDS; i++) {
+            // Fetch the allocations so far.
+            final long       lStart  = this.getThreadAllocatedBytes();
+            // Compute the Result.
+            final DTW.Result lResult = lDTW.compute(this.mSample, this.mTemplate);
+            // Measure the allocations.
+            final long       lBytes  = this.getThreadAllocatedBytes() - lStart - this.mOverhead;
+            // Track the least allocations beyond the packed path; interleaved (i, j) integers.
+            lExcess = Math.min(lExcess, lBytes - (4L * lResult.getPath().length));
+        }
+        // Assert that only the Result was allocated.
+        assertTrue("compute() allocated " + lExcess + " bytes beyond its path.", lExcess <= WorkspaceTest.SLACK_RESULT);
+    }
+
+    /**
+     *  Warms up a DTW, and then returns the bytes allocated by repeatedly computing the distance between a pair of series.
+     *  The least of several rounds is taken, since the JIT may allocate once on this thread while compiling the loop.
+     **/
+    private long getAllocatedBytes(final DTW pDTW, final float[] pSample, final float[] pTemplate, final Window pWindow, final double pCutoff) {
+        // Declare the Checksum. (Keeps the distances live.)
+        double lChecksum = 0.0;
+        // Warm up the Workspace.
+        for(int i = 0; i < WorkspaceTest.COUNT_WARM_UP; i++) {
+            // Accumulate the Distance.
+            lChecksum += pDTW.getDistance(pSample, pTemplate, pWindow, pCutoff);
+        }
+        // Declare the Bytes.
+        long lBytes = Long.MAX_VALUE;
+        // Iterate the Rounds.
+        for(int i = 0; i < WorkspaceTest.COUNT_ROUNDS; i++) {
+            // Fetch the allocations so far.
+            final long lStart = this.getThreadAllocatedBytes();
+            // Iterate the Measurements.
+            for(int j = 0; j < WorkspaceTest.COUNT_ITERATIONS; j++) {
+                // Accumulate the Distance.
+                lChecksum += pDTW.getDistance(pSample, pTemplate, pWindow, pCutoff);
+            }
+            // Track the least allocations.
+            lBytes = Math.min(lBytes, this.getThreadAllocatedBytes() - lStart - this.mOverhead);
+        }
+        // Ensure the distances were computed.
+        assertTrue("The distances weren't computed.", !Double.isNaN(lChecksum));
+        // Return the Bytes.
+        return lBytes;
+    }
+
+    /** Calibrates the bytes allocated by reading the allocation counter itself. */
+    private long getOverhead() {
+        // Declare the Overhead.
+        long lOverhead = Long.MAX_VALUE;
+        // Iterate the Calibrations. (Take the least, which excludes any one-off allocations made by the first reads.)
+        for(int i = 0; i < 10; i++) {
+            // Fetch the allocations so far.
+            final long lStart = this.getThreadAllocatedBytes();
+            // Track the Overhead.
+            lOverhead = Math.min(lOverhead, this.getThreadAllocatedBytes() - lStart);
+        }
+        // Return the Overhead.
+        return lOverhead;
+    }
+
+    /** Returns the number of bytes the current thread has allocated. */
+    private long getThreadAllocatedBytes() {
+        // Fetch the allocations of the current thread.
+        return this.mThreadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /** Returns a random series. */
+    private static float[] getSeries(final Random pRandom, final int pLength) {
+        // Allocate the Series.
+        final float[] lSeries = new float[pLength];
+        // Iterate the Series.
+        for(int i = 0; i < pLength; i++) {
+            // Assign a random Value.
+            lSeries[i] = (float)pRandom.nextGaussian();
+        }
+        // Return the Series.
+        return lSeries;
+    }
+
+}